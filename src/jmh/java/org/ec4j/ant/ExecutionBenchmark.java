@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks whole executions of {@link CheckEditorconfigTask} and {@link FormatEditorconfigTask} over a
+ * {@link SyntheticTree}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionBenchmark {
+
+    /**
+     * A tree whose files comply with the {@code .editorconfig} rules.
+     */
+    @State(Scope.Benchmark)
+    public static class CleanTree extends TreeState {
+    }
+
+    /**
+     * A tree whose files violate the {@code .editorconfig} rules before each invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class DirtyTree extends TreeState {
+        @Setup(Level.Invocation)
+        public void makeDirty() throws IOException {
+            tree.write(true);
+        }
+    }
+
+    /**
+     * The parameters shared by {@link CleanTree} and {@link DirtyTree}.
+     */
+    @State(Scope.Benchmark)
+    public abstract static class TreeState {
+        @Param({ "3" })
+        int depth;
+
+        @Param({ "java,xml,txt" })
+        String extensions;
+
+        @Param({ "1000" })
+        int fileCount;
+
+        @Param({ "1", "4" })
+        int threads;
+
+        SyntheticTree tree;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            tree = SyntheticTree.create(fileCount, depth, extensions);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            tree.delete();
+        }
+    }
+
+    /**
+     * Checks a tree that has no violations.
+     *
+     * @param state the {@link CleanTree}
+     */
+    @Benchmark
+    public void check(CleanTree state) {
+        final CheckEditorconfigTask task = state.tree.configure(new CheckEditorconfigTask());
+        task.setThreads(state.threads);
+        task.execute();
+    }
+
+    /**
+     * Formats a tree in which every file needs to be fixed.
+     *
+     * @param state the {@link DirtyTree}
+     */
+    @Benchmark
+    public void format(DirtyTree state) {
+        final FormatEditorconfigTask task = state.tree.configure(new FormatEditorconfigTask());
+        task.setThreads(state.threads);
+        task.execute();
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.ec4j.core.ResourcePropertiesService;
+import org.ec4j.maven.lint.api.LinterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the steps {@link AbstractEditorconfigTask#execute()} performs before any file is actually linted: scanning
+ * the file sets, querying the {@code .editorconfig} properties and selecting the {@link org.ec4j.maven.lint.api.Linter}s.
+ * Each benchmark method processes all files of a {@link SyntheticTree}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    @Param({ "3" })
+    int depth;
+
+    @Param({ "java,xml,txt" })
+    String extensions;
+
+    @Param({ "10000" })
+    int fileCount;
+
+    private List<String> linterGlobs;
+
+    private LinterRegistry linterRegistry;
+
+    private CheckEditorconfigTask task;
+
+    private SyntheticTree tree;
+
+    /**
+     * Builds a {@link LinterRegistry} containing the {@link org.ec4j.maven.lint.api.Linter}s available on the class
+     * path as every task execution does.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     */
+    @Benchmark
+    public void buildLinterRegistry(Blackhole blackhole) {
+        blackhole.consume(task.buildLinterRegistry(new ArrayList<String>()));
+    }
+
+    /**
+     * Selects the linters for each file via {@link LinterRegistry#filter(Path)}, matching all globs against every
+     * file.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     */
+    @Benchmark
+    public void filterLinters(Blackhole blackhole) {
+        for (Path file : tree.getFiles()) {
+            blackhole.consume(linterRegistry.filter(file));
+        }
+    }
+
+    /**
+     * Selects the linters for each file with a fresh {@link LinterFilter} as the task does, for comparison with
+     * {@link #filterLinters(Blackhole)}.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     */
+    @Benchmark
+    public void filterLintersMemoized(Blackhole blackhole) {
+        final LinterFilter linterFilter = new LinterFilter(linterRegistry, linterGlobs);
+        for (Path file : tree.getFiles()) {
+            blackhole.consume(linterFilter.filter(file));
+        }
+    }
+
+    /**
+     * Queries the properties for each file with a fresh {@link DirectoryPropertiesCache} as the task does.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     * @throws IOException on I/O problems
+     */
+    @Benchmark
+    public void queryProperties(Blackhole blackhole) throws IOException {
+        final DirectoryPropertiesCache cache = new DirectoryPropertiesCache(newService(), CHARSET);
+        final Path root = tree.getRoot();
+        for (Path file : tree.getFiles()) {
+            blackhole.consume(cache.queryProperties(root.resolve(file)));
+        }
+    }
+
+    /**
+     * Queries the properties for each file via {@link ResourcePropertiesService#queryProperties(org.ec4j.core.Resource)}
+     * for comparison with {@link #queryProperties(Blackhole)}.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     * @throws IOException on I/O problems
+     */
+    @Benchmark
+    public void queryPropertiesService(Blackhole blackhole) throws IOException {
+        final ResourcePropertiesService service = newService();
+        final Path root = tree.getRoot();
+        for (Path file : tree.getFiles()) {
+            blackhole.consume(service.queryProperties(new FileResource(root.resolve(file), CHARSET)));
+        }
+    }
+
+    /**
+     * Iterates over the included files.
+     *
+     * @param blackhole a JMH {@link Blackhole}
+     */
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        final Iterator<Path> files = task.scanIncludedFiles();
+        while (files.hasNext()) {
+            blackhole.consume(files.next());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tree = SyntheticTree.create(fileCount, depth, extensions);
+        task = tree.configure(new CheckEditorconfigTask());
+        linterGlobs = new ArrayList<>();
+        linterRegistry = task.buildLinterRegistry(linterGlobs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tree.delete();
+    }
+
+    private static ResourcePropertiesService newService() {
+        return ResourcePropertiesService.builder().cache(new EditorConfigCache()).build();
+    }
+
+}
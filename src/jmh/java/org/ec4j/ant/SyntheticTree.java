@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * A generated source tree to run the benchmarks against. The files are spread evenly over directories nested
+ * {@code depth} levels deep with {@link #FAN_OUT} subdirectories per directory. There is a root {@code .editorconfig}
+ * file and a nested one in every top level directory.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+class SyntheticTree {
+
+    /** The number of subdirectories per directory */
+    static final int FAN_OUT = 4;
+
+    /** The number of lines per file */
+    static final int LINES = 40;
+
+    private static final String NESTED_EDITORCONFIG = "[*.java]\n" //
+            + "indent_size = 4\n" //
+            + "\n" //
+            + "[**/*.xml]\n" //
+            + "indent_size = 2\n";
+
+    private static final String ROOT_EDITORCONFIG = "root = true\n" //
+            + "\n" //
+            + "[*]\n" //
+            + "charset = utf-8\n" //
+            + "end_of_line = lf\n" //
+            + "insert_final_newline = true\n" //
+            + "trim_trailing_whitespace = true\n" //
+            + "\n" //
+            + "[*.{java,xml}]\n" //
+            + "indent_style = space\n" //
+            + "\n" //
+            + "[*.xml]\n" //
+            + "indent_size = 2\n";
+
+    /**
+     * Generates a new tree in a new temporary directory.
+     *
+     * @param fileCount the number of files to generate
+     * @param depth how deep the directories should be nested
+     * @param extensions a comma separated list of file name extensions to generate the files with in a round robin
+     *        fashion; {@code java}, {@code xml} and anything else is supported, the latter being plain text
+     * @return a new {@link SyntheticTree}
+     * @throws IOException on I/O problems
+     */
+    static SyntheticTree create(int fileCount, int depth, String extensions) throws IOException {
+        final Path root = Files.createTempDirectory("editorconfig-jmh");
+        Files.write(root.resolve(".editorconfig"), ROOT_EDITORCONFIG.getBytes(StandardCharsets.UTF_8));
+        final String[] exts = extensions.split(",");
+        final List<Path> files = new ArrayList<>(fileCount);
+        int leafCount = 1;
+        for (int i = 0; i < depth; i++) {
+            leafCount *= FAN_OUT;
+        }
+        for (int i = 0; i < fileCount; i++) {
+            Path dir = root;
+            int leaf = i % leafCount;
+            for (int level = 0; level < depth; level++) {
+                dir = dir.resolve("d" + (leaf % FAN_OUT));
+                leaf /= FAN_OUT;
+            }
+            files.add(root.relativize(dir.resolve("File" + i + "." + exts[i % exts.length].trim())));
+        }
+        final SyntheticTree result = new SyntheticTree(root, Collections.unmodifiableList(files));
+        for (Path file : files) {
+            final Path absFile = root.resolve(file);
+            if (!Files.exists(absFile.getParent())) {
+                Files.createDirectories(absFile.getParent());
+                if (absFile.getParent().getParent().equals(root)) {
+                    Files.write(absFile.getParent().resolve(".editorconfig"),
+                            NESTED_EDITORCONFIG.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        result.write(false);
+        return result;
+    }
+
+    private static String content(Path file, boolean dirty) {
+        final String fileName = file.getFileName().toString();
+        final String trailing = dirty ? "  " : "";
+        final StringBuilder result = new StringBuilder(LINES * 32);
+        if (fileName.endsWith(".java")) {
+            result.append("package org.example;").append(trailing).append('\n');
+            result.append("public class Example {\n");
+            for (int i = 0; i < LINES; i++) {
+                result.append("    int field").append(i).append(" = ").append(i).append(';')
+                        .append(i % 5 == 0 ? trailing : "").append('\n');
+            }
+            result.append("}\n");
+        } else if (fileName.endsWith(".xml")) {
+            result.append("<root>").append(trailing).append('\n');
+            for (int i = 0; i < LINES; i++) {
+                result.append("  <item id=\"").append(i).append("\">\n");
+                result.append("    <value>").append(i).append("</value>").append(i % 5 == 0 ? trailing : "")
+                        .append('\n');
+                result.append("  </item>\n");
+            }
+            result.append("</root>\n");
+        } else {
+            for (int i = 0; i < LINES; i++) {
+                result.append("Line ").append(i).append(" of some plain text").append(i % 5 == 0 ? trailing : "")
+                        .append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    private final List<Path> files;
+
+    private final Path root;
+
+    SyntheticTree(Path root, List<Path> files) {
+        super();
+        this.root = root;
+        this.files = files;
+    }
+
+    /**
+     * Sets up the given {@code task} to process this tree.
+     *
+     * @param task the task to configure
+     * @return the given {@code task}
+     */
+    <T extends AbstractEditorconfigTask> T configure(T task) {
+        final Project project = new Project();
+        project.init();
+        project.setBaseDir(root.toFile());
+        task.setProject(project);
+        task.setTaskName(task.getClass().getSimpleName());
+        final FileSet fileSet = new FileSet();
+        fileSet.setDir(root.toFile());
+        task.addFileset(fileSet);
+        return task;
+    }
+
+    /**
+     * Deletes the whole tree.
+     *
+     * @throws IOException on I/O problems
+     */
+    void delete() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return the generated files relative to {@link #getRoot()}
+     */
+    List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the root directory of the tree
+     */
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * (Re-)writes all files of the tree.
+     *
+     * @param dirty if {@code true} trailing whitespace will be added to some lines so that the files need to be
+     *        formatted
+     * @throws IOException on I/O problems
+     */
+    void write(boolean dirty) throws IOException {
+        for (Path file : files) {
+            Files.write(root.resolve(file), content(file, dirty).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+}
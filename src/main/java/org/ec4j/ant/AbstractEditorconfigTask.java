@@ -16,19 +16,41 @@
  */
 package org.ec4j.ant;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.ResourceCollection;
 import org.ec4j.ant.AntLintLogger.Level;
-import org.ec4j.core.Cache.Caches;
-import org.ec4j.core.Resource.Resources;
 import org.ec4j.core.ResourceProperties;
 import org.ec4j.core.ResourcePropertiesService;
 import org.ec4j.core.model.PropertyType;
@@ -38,6 +60,7 @@ import org.ec4j.maven.lint.api.Linter;
 import org.ec4j.maven.lint.api.LinterRegistry;
 import org.ec4j.maven.lint.api.Logger;
 import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
 import org.ec4j.maven.lint.api.ViolationHandler;
 
 /**
@@ -47,6 +70,9 @@ import org.ec4j.maven.lint.api.ViolationHandler;
  */
 public abstract class AbstractEditorconfigTask extends Task {
 
+    private static final WatchEvent.Kind<?>[] WATCHED_EVENT_KINDS = { StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY };
+
     /**
      * If set to {@code true}, the class path will be scanned for implementations of {@link Linter} and all
      * {@link Linter}s found will be added to {@link #linters} with their default includes and excludes.
@@ -55,10 +81,31 @@ public abstract class AbstractEditorconfigTask extends Task {
      */
     protected boolean addLintersFromClassPath = true;
 
+    /** The {@link BinaryFileDetector} of the current execution or {@code null} if {@link #skipBinaryFiles} is off */
+    BinaryFileDetector binaryFileDetector;
+
     /** The result of {@code basedir.toPath()} */
     protected Path basedirPath;
 
-    /** The result of {@code Charset.forName(encoding)} */
+    /**
+     * A file where the paths of files complying with the {@code .editorconfig} rules are stored together with their
+     * sizes, content hashes and the state of the applicable {@code .editorconfig} files. On subsequent runs, the files
+     * that did not change since then are not linted again. If {@code null} no such cache is used.
+     *
+     * @since 0.0.2
+     */
+    protected File cacheFile;
+
+    /**
+     * If set, only the files added or modified since the merge base of the given git revision (such as
+     * {@code origin/master}) and {@code HEAD} are processed. Uncommitted and untracked files count as modified. The
+     * files are still selected by {@link #filesets} in the first place. See also {@link #onlyStaged}.
+     *
+     * @since 0.0.2
+     */
+    protected String changedSince;
+
+    /** The result of {@code CharsetCache.forName(encoding)} */
     protected Charset charset;
 
     /**
@@ -88,10 +135,26 @@ public abstract class AbstractEditorconfigTask extends Task {
 
     /**
      * File patterns to include/exclude from the set of files to process. See also {@link #excludeNonSourceFiles} and {@link #excludeSubmodules}.
+     * Since 0.0.2, any file system {@link ResourceCollection} (such as {@code <files>}, {@code <path>},
+     * {@code <union>} or {@code <restrict>}) can be added too via {@link #add(ResourceCollection)}; such collections
+     * are iterated over lazily and in the order in which they were added.
      *
      * @since 0.0.1
      */
-    protected List<FileSet> filesets = new ArrayList<>();
+    protected List<ResourceCollection> filesets = new ArrayList<>();
+
+    /**
+     * The {@code git} executable to run if {@link #changedSince} or {@link #onlyStaged} is set.
+     *
+     * @since 0.0.2
+     */
+    protected String gitExecutable = "git";
+
+    /**
+     * If not {@code null}, the absolute paths of the files to process, used instead of scanning {@link #filesets}; set
+     * by {@link ServerEditorconfigTask} to the files sent by a client
+     */
+    Iterator<Path> includedFiles;
 
     /**
      * Set the includes and excludes for the individual {@link Linter}s
@@ -100,31 +163,186 @@ public abstract class AbstractEditorconfigTask extends Task {
      */
     protected List<LinterConfig> linters = new ArrayList<>();
 
+    /**
+     * If not {@code null}, used instead of building a new {@link LinterRegistry} on every execution; set by
+     * {@link ServerEditorconfigTask} which keeps it for the whole lifetime of the server
+     */
+    LinterFilter linterFilter;
+
+    /** The {@link LintCache} read from {@link #cacheFile} or {@code null} if {@link #cacheFile} is not set */
+    protected LintCache lintCache;
+
     protected Logger log = new AntLintLogger(this, Level.INFO);
 
     protected Level logLevel = Level.INFO;
 
+    /** The {@link ParallelLinter} of the current execution or {@code null} if big files are not split */
+    ParallelLinter parallelLinter;
+
+    /** The {@link LintMetrics} of the current execution or {@code null} if no metrics are collected */
+    protected LintMetrics metrics;
+
+    /**
+     * A file to write the time spent and the bytes processed per {@link Linter}, per file name extension and per
+     * phase of the task execution to. The file is written in CSV format if its name ends with {@code .csv} and in
+     * JSON format otherwise. The {@link #slowestFiles} are included too. If {@code null}, no such file is written.
+     *
+     * @since 0.0.2
+     */
+    protected File metricsFile;
+
+    /**
+     * Module roots to process in a single execution, each with its own {@code <fileset>}s or, if it has none, with all
+     * of its files. All modules share one {@link LinterRegistry}, one cache of parsed {@code .editorconfig} files and
+     * the {@link #threads}, so that the files of the next module are linted while the violations of the previous one
+     * are still being reported. The number of processed files and violations is logged per module and
+     * {@link #failOnNoMatchingProperties} applies to each module separately. The {@link #filesets} of the task itself
+     * are processed too, but they are not attributed to any module.
+     *
+     * @since 0.0.2
+     */
+    protected List<ModuleConfig> modules = new ArrayList<>();
+
+    /**
+     * If {@code true}, only the files added or modified in the git index are processed, which is handy in pre-commit
+     * hooks. If {@link #changedSince} is set too, the index is compared against the merge base of {@link #changedSince}
+     * and {@code HEAD}, otherwise against {@code HEAD}.
+     *
+     * @since 0.0.2
+     */
+    protected boolean onlyStaged;
+
+    /**
+     * The id of an Ant project reference under which the parsed {@code .editorconfig} files are shared with other task
+     * executions having the same {@code propertiesCacheRef}. If no such reference exists yet, it gets created. Cache
+     * entries of {@code .editorconfig} files that were modified since they were parsed are discarded at the beginning
+     * of every task execution. If {@code null}, the {@code .editorconfig} files are parsed anew for every task
+     * execution.
+     *
+     * @since 0.0.2
+     */
+    protected String propertiesCacheRef;
+
+    /**
+     * If {@code true}, the first few kilobytes of every selected file are inspected before anything else is done with
+     * the file. Files containing {@code NUL} bytes or lots of byte sequences invalid in the default {@link #encoding}
+     * there are considered binary and skipped. This is handy if the binary files cannot be excluded reliably by
+     * {@link #excludeNonSourceFiles} and {@link #filesets}. The number and the size of the skipped files are logged
+     * at the end.
+     *
+     * @since 0.0.2
+     */
+    protected boolean skipBinaryFiles;
+
+    /**
+     * The number of the slowest files to list in the log at the end of the task execution and in {@link #metricsFile}.
+     * {@code 0} means not to track the slowest files at all.
+     *
+     * @since 0.0.2
+     */
+    protected int slowestFiles;
+
+    /**
+     * The number of threads to use for linting the files. Values lower than {@code 1} stand for the number of
+     * available processors. The files are queried and linted concurrently, but the violations are always reported in
+     * the same order as with a single thread, so the output and the outcome of the task do not depend on this setting.
+     *
+     * @since 0.0.2
+     */
+    protected int threads = 1;
+
+    /**
+     * If {@code true}, the task does not finish after checking or formatting the selected files. Instead, it watches
+     * the directories of {@link #filesets} for changes and processes every added or modified file again as soon as it
+     * is selected by {@link #filesets}. When an {@code .editorconfig} file changes, all selected files in its directory
+     * and below are processed again. Violations do not fail the build in this mode; they are just logged. See also
+     * {@link #watchDebounce} and {@link #watchTimeout}.
+     *
+     * @since 0.0.2
+     */
+    protected boolean watch;
+
+    /**
+     * In {@link #watch} mode, the number of milliseconds to wait for further changes after a change is noticed, so that
+     * a burst of changes, like saving several files at once or switching git branches, is processed in one batch.
+     *
+     * @since 0.0.2
+     */
+    protected int watchDebounce = 200;
+
+    /**
+     * In {@link #watch} mode, the number of seconds without any change after which the task finishes. {@code 0} means
+     * to watch until the build is interrupted.
+     *
+     * @since 0.0.2
+     */
+    protected int watchTimeout;
+
     public AbstractEditorconfigTask() {
         super();
     }
 
+    /**
+     * @param resources a {@link ResourceCollection} containing file system resources to process
+     * @since 0.0.2
+     */
+    public void add(ResourceCollection resources) {
+        filesets.add(resources);
+    }
+
     public void addFileset(FileSet fileset) {
         filesets.add(fileset);
     }
 
     protected LinterRegistry buildLinterRegistry() {
+        return buildLinterRegistry(new ArrayList<String>());
+    }
+
+    /**
+     * @param globs a {@link Collection} to add the include and exclude globs of all {@link Linter}s in the resulting
+     *        {@link LinterRegistry} to; for the sake of simplicity also the globs of {@link Linter}s removed via
+     *        {@link #linters} are added
+     * @return a new {@link LinterRegistry}
+     */
+    protected LinterRegistry buildLinterRegistry(Collection<String> globs) {
 
         final LinterRegistry.Builder linterRegistryBuilder = LinterRegistry.builder().log(log);
+        final ClassLoader classLoader = getClass().getClassLoader();
 
+        final Set<String> scannedClassNames = new HashSet<>();
         if (addLintersFromClassPath) {
-            linterRegistryBuilder.scan(getClass().getClassLoader());
+            for (Linter linter : LinterIndex.newLinters(classLoader)) {
+                linterRegistryBuilder.entry(linter);
+                scannedClassNames.add(linter.getClass().getName());
+                globs.addAll(linter.getDefaultIncludes());
+                globs.addAll(linter.getDefaultExcludes());
+            }
         }
 
         if (linters != null && !linters.isEmpty()) {
             for (LinterConfig linter : linters) {
                 if (linter.isEnabled()) {
-                    linterRegistryBuilder.entry(linter.getId(), linter.getClassName(), this.getClass().getClassLoader(),
+                    linterRegistryBuilder.entry(linter.getId(), linter.getClassName(), classLoader,
                             linter.getIncludes(), linter.getExcludes(), linter.isUseDefaultIncludesAndExcludes());
+                    if (linter.getIncludes() != null) {
+                        globs.addAll(Arrays.asList(linter.getIncludes()));
+                    }
+                    if (linter.getExcludes() != null) {
+                        globs.addAll(Arrays.asList(linter.getExcludes()));
+                    }
+                    if (linter.isUseDefaultIncludesAndExcludes()
+                            && !scannedClassNames.contains(linter.getClassName())) {
+                        /* the builder instantiated the linter for us, but we have no access to the instance */
+                        try {
+                            final Linter instance = (Linter) classLoader.loadClass(linter.getClassName())
+                                    .newInstance();
+                            globs.addAll(instance.getDefaultIncludes());
+                            globs.addAll(instance.getDefaultExcludes());
+                        } catch (ReflectiveOperationException e) {
+                            /* cannot happen as the builder succeeded in doing the same */
+                            throw new BuildException("Could not load class " + linter.getClassName(), e);
+                        }
+                    }
                 } else {
                     linterRegistryBuilder.removeEntry(linter.getId());
                 }
@@ -135,19 +353,75 @@ public abstract class AbstractEditorconfigTask extends Task {
 
     }
 
+    /**
+     * @return a hash of all settings that can influence the result of linting a file; the entries of {@link #lintCache}
+     *         are valid only as long as this fingerprint does not change
+     */
+    protected String computeCacheFingerprint() {
+        final StringBuilder sb = new StringBuilder() //
+                .append(getClass().getName()) //
+                .append('|').append(charset.name()) //
+                .append('|').append(addLintersFromClassPath);
+        final Package pkg = getClass().getPackage();
+        sb.append('|').append(pkg == null ? null : pkg.getImplementationVersion());
+        if (addLintersFromClassPath) {
+            final ClassLoader classLoader = getClass().getClassLoader();
+            for (String className : LinterIndex.classNames(classLoader)) {
+                Package linterPkg;
+                try {
+                    linterPkg = Class.forName(className, false, classLoader).getPackage();
+                } catch (ClassNotFoundException e) {
+                    linterPkg = null;
+                }
+                sb.append('|').append(className).append(':')
+                        .append(linterPkg == null ? null : linterPkg.getImplementationVersion());
+            }
+        }
+        if (linters != null) {
+            for (LinterConfig linter : linters) {
+                sb.append('|').append(linter.getId()) //
+                        .append(':').append(linter.getClassName()) //
+                        .append(':').append(linter.isEnabled()) //
+                        .append(':').append(Arrays.toString(linter.getIncludes())) //
+                        .append(':').append(Arrays.toString(linter.getExcludes())) //
+                        .append(':').append(linter.isUseDefaultIncludesAndExcludes());
+            }
+        }
+        return LintCache.hash(sb.toString());
+    }
+
     protected abstract ViolationHandler createHandler();
 
     public List<LinterConfig> createLinters() {
         return this.linters = new ArrayList<>();
     }
 
+    /**
+     * @return a new {@link ModuleConfig} added to {@link #modules}
+     * @since 0.0.2
+     */
+    public ModuleConfig createModule() {
+        final ModuleConfig result = new ModuleConfig();
+        modules.add(result);
+        return result;
+    }
+
+    /**
+     * @param threads the number of threads to use, greater than {@code 1}
+     * @return a new {@link ParallelLinter} for splitting big files or {@code null} if files should never be split
+     */
+    ParallelLinter createParallelLinter(int threads) {
+        return null;
+    }
+
     /**
      * @param absFile  the {@link Path} to create a {@link Resource} for. Must be absolute.
      * @param relFile  the {@link Path} to create a {@link Resource} for. Must be relative to {@link #basedirPath}.
      * @param encoding
-     * @return
+     * @return a {@link Resource} that reads the file at most once no matter how many {@link Linter}s process it
+     * @throws IOException on I/O problems
      */
-    protected abstract Resource createResource(Path absFile, Path relFile, Charset encoding);
+    protected abstract Resource createResource(Path absFile, Path relFile, Charset encoding) throws IOException;
 
     /**
      * Called by Maven for executing the Mojo.
@@ -155,88 +429,652 @@ public abstract class AbstractEditorconfigTask extends Task {
      */
     @Override
     public void execute() {
+        AntLintLogger.updateOutputLevel(log);
 
         if (this.encoding == null || this.encoding.isEmpty()) {
             this.charset = Charset.defaultCharset();
             log.warn("Using current platform's default encoding {} to read .editorconfig files. You do not want this. Set either 'project.build.sourceEncoding' or 'editorconfig.encoding' property.",
                     charset);
         } else {
-            this.charset = Charset.forName(this.encoding);
+            this.charset = CharsetCache.forName(this.encoding);
         }
         this.basedirPath = getProject().getBaseDir().toPath();
+        for (ModuleConfig module : modules) {
+            if (module.getDir() == null) {
+                throw new BuildException("No dir specified for a module", getLocation());
+            }
+            if (!module.getDir().isDirectory()) {
+                throw new BuildException(String.format("The dir '%s' of module '%s' is not a directory",
+                        module.getDir(), module.getName()), getLocation());
+            }
+        }
+        if (watch && !modules.isEmpty()) {
+            throw new BuildException("watch cannot be combined with modules", getLocation());
+        }
+
+        final LinterFilter linterFilter;
+        if (this.linterFilter == null) {
+            final List<String> linterGlobs = new ArrayList<>();
+            linterFilter = new LinterFilter(buildLinterRegistry(linterGlobs), linterGlobs);
+        } else {
+            linterFilter = this.linterFilter;
+        }
+        log.debug("Selecting linters by file {}", linterFilter.getKeyType().name().toLowerCase(Locale.ROOT));
+        if (watch) {
+            watch(linterFilter);
+        } else {
+            lintFiles(scanIncludedFiles(), linterFilter, null, true);
+        }
 
-        LinterRegistry linterRegistry = buildLinterRegistry();
-        final List<Path> includedFiles = scanIncludedFiles();
+    }
 
+    /**
+     * Lints the given {@code files} and reports the violations found to a new handler created by
+     * {@link #createHandler()}. Called once per execution or, in {@link #watch} mode, once for the initial scan and
+     * then once for every batch of changes.
+     *
+     * @param scannedFiles the files to lint, relative to {@link #basedirPath}
+     * @param linterFilter the {@link LinterFilter} to select the {@link Linter}s with
+     * @param propertiesService the {@link ResourcePropertiesService} to use or {@code null} to get one via
+     *        {@link #getResourcePropertiesService()}
+     * @param requirePropertiesMatch if {@code true}, {@link #failOnNoMatchingProperties} is taken into account
+     */
+    void lintFiles(Iterator<Path> scannedFiles, final LinterFilter linterFilter,
+            ResourcePropertiesService propertiesService, boolean requirePropertiesMatch) {
+        final Set<Path> changedFiles = listChangedFiles();
         try {
-            final ViolationHandler handler = createHandler();
+            this.lintCache = cacheFile == null ? null
+                    : LintCache.load(cacheFile.toPath(), computeCacheFingerprint(), log);
+        } catch (IOException e) {
+            throw new BuildException("Could not read " + cacheFile, e, getLocation());
+        }
 
-            final ResourcePropertiesService resourcePropertiesService = ResourcePropertiesService.builder() //
-                    .cache(Caches.permanent()) //
-                    .build();
+        this.metrics = metricsFile != null || slowestFiles > 0 ? new LintMetrics(slowestFiles) : null;
+        this.binaryFileDetector = skipBinaryFiles ? new BinaryFileDetector() : null;
+
+        final int useThreads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+        final ViolationHandler handler = createHandler();
+        this.parallelLinter = useThreads > 1 ? createParallelLinter(useThreads) : null;
+        try (OrderedExecutor<LintedFile> executor = new OrderedExecutor<>(useThreads)) {
+
+            final DirectoryPropertiesCache propertiesCache = new DirectoryPropertiesCache(
+                    propertiesService == null ? getResourcePropertiesService() : propertiesService, charset);
             handler.startFiles();
             boolean propertyMatched = false;
-            for (Path file : includedFiles) {
-                // file relative to basedir
-                final Path absFile = basedirPath.resolve(file);
-                log.info("Processing file '{}'", file);
-                final ResourceProperties editorConfigProperties = resourcePropertiesService
-                        .queryProperties(Resources.ofPath(absFile, charset));
-                if (!editorConfigProperties.getProperties().isEmpty()) {
+            final List<Path> moduleDirs = new ArrayList<>(modules.size());
+            for (ModuleConfig module : modules) {
+                moduleDirs.add(module.getDir().toPath().toAbsolutePath().normalize());
+            }
+            final int[] moduleFileCounts = new int[modules.size()];
+            final int[] moduleSubmittedCounts = new int[modules.size()];
+            final int[] moduleViolationCounts = new int[modules.size()];
+            final boolean[] modulePropertyMatched = new boolean[modules.size()];
+            final Path realBasedirPath = changedFiles == null ? null : basedirPath.toRealPath();
+            int selectedCount = 0;
+            int submittedCount = 0;
+            final Iterator<Path> files = metrics == null ? scannedFiles : metrics.timeScan(scannedFiles);
+            while (files.hasNext() || executor.hasPending()) {
+                while (files.hasNext() && !executor.isFull()) {
+                    final Path file = files.next();
+                    selectedCount++;
+                    if (changedFiles != null && !changedFiles.contains(realBasedirPath.resolve(file).normalize())) {
+                        continue;
+                    }
+                    submittedCount++;
+                    final int moduleIndex = moduleOf(file, moduleDirs);
+                    if (moduleIndex >= 0) {
+                        moduleSubmittedCounts[moduleIndex]++;
+                    }
+                    executor.submit(new Callable<LintedFile>() {
+                        @Override
+                        public LintedFile call() throws IOException {
+                            return lint(file, propertiesCache, linterFilter);
+                        }
+                    });
+                }
+                if (!executor.hasPending()) {
+                    /* all remaining files were filtered out */
+                    break;
+                }
+                final LintedFile lintedFile = executor.next();
+                logLinted(lintedFile);
+                if (lintedFile.isMatched()) {
                     propertyMatched = true;
-                    final Charset useEncoding = Charset
-                            .forName(editorConfigProperties.getValue(PropertyType.charset, charset.name(), true));
-                    final Resource resource = createResource(absFile, file, useEncoding);
-                    final List<Linter> filteredLinters = linterRegistry.filter(file);
-                    ViolationHandler.ReturnState state = ViolationHandler.ReturnState.RECHECK;
-                    while (state != ViolationHandler.ReturnState.FINISHED) {
-                        for (Linter linter : filteredLinters) {
-                            log.trace("Processing file '{}' using linter {}", file, linter.getClass().getName());
-                            handler.startFile(resource);
-                            linter.process(resource, editorConfigProperties, handler);
+                    final int moduleIndex = moduleOf(lintedFile.getFile(), moduleDirs);
+                    if (moduleIndex >= 0) {
+                        modulePropertyMatched[moduleIndex] = true;
+                        moduleFileCounts[moduleIndex]++;
+                        moduleViolationCounts[moduleIndex] += lintedFile.getViolations().size();
+                    }
+                    if (!lintedFile.isUpToDate()) {
+                        final long reportStart = metrics == null ? 0 : System.nanoTime();
+                        report(lintedFile, handler);
+                        if (metrics != null) {
+                            metrics.addPhase(LintMetrics.Phase.REPORT, 0, System.nanoTime() - reportStart);
+                        }
+                        if (lintedFile.getCacheEntry() != null && lintedFile.getViolations().isEmpty()) {
+                            lintCache.put(lintedFile.getFile(), lintedFile.getCacheEntry());
                         }
-                        state = handler.endFile();
                     }
                 }
             }
+            if (changedFiles != null) {
+                log.info("{} out of {} selected files changed according to git", submittedCount, selectedCount);
+            }
+            if (binaryFileDetector != null) {
+                log.info("Skipped {} binary {} having {} bytes in total", binaryFileDetector.getSkippedFiles(),
+                        binaryFileDetector.getSkippedFiles() == 1 ? "file" : "files",
+                        binaryFileDetector.getSkippedBytes());
+            }
+            if (lintCache != null) {
+                lintCache.store(basedirPath);
+                log.info("Skipped {} unchanged {} found in cache file '{}'", lintCache.getHitCount(),
+                        lintCache.getHitCount() == 1 ? "file" : "files", cacheFile);
+            }
+            if (metrics != null) {
+                metrics.logSlowestFiles(log);
+                if (metricsFile != null) {
+                    metrics.write(metricsFile.toPath());
+                    log.info("Metrics written to '{}'", metricsFile);
+                }
+            }
+            for (int i = 0; i < moduleDirs.size(); i++) {
+                log.info("Module '{}': processed {} {} having {} {}", modules.get(i).getName(), moduleFileCounts[i],
+                        moduleFileCounts[i] == 1 ? "file" : "files", moduleViolationCounts[i],
+                        moduleViolationCounts[i] == 1 ? "violation" : "violations");
+            }
             handler.endFiles();
-            if (!propertyMatched) {
-                if (failOnNoMatchingProperties) {
-                    throw new BuildException(String.format("No .editorconfig properties applicable for files under '{}'", basedirPath), getLocation());
-                } else {
-                    log.warn("No .editorconfig properties applicable for files under '{}'", basedirPath);
+            if (!requirePropertiesMatch) {
+                /* nothing to check */
+            } else if (modules.isEmpty()) {
+                if (!propertyMatched && (submittedCount > 0 || !isPartialSelection())) {
+                    noMatchingProperties(basedirPath);
+                }
+            } else {
+                for (int i = 0; i < moduleDirs.size(); i++) {
+                    if (!modulePropertyMatched[i] && (moduleSubmittedCounts[i] > 0 || !isPartialSelection())) {
+                        noMatchingProperties(moduleDirs.get(i));
+                    }
                 }
             }
         } catch (IOException e) {
             throw new BuildException(e.getMessage(), e);
         } catch (FormatException e) {
             throw new BuildException("\n\n" + e.getMessage() + "\n\n", e, getLocation());
+        } finally {
+            if (parallelLinter != null) {
+                parallelLinter.close();
+                parallelLinter = null;
+            }
+            if (handler instanceof Closeable) {
+                try {
+                    ((Closeable) handler).close();
+                } catch (IOException e) {
+                    log.warn("Could not close {}: {}", handler, e.getMessage());
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @param file a file relative to {@link #basedirPath}
+     * @param moduleDirs the absolute normalized directories of {@link #modules}
+     * @return the index of the innermost module containing the given {@code file} or {@code -1} if the {@code file}
+     *         belongs to no module
+     */
+    private int moduleOf(Path file, List<Path> moduleDirs) {
+        if (moduleDirs.isEmpty()) {
+            return -1;
+        }
+        final Path absFile = basedirPath.resolve(file).toAbsolutePath().normalize();
+        int result = -1;
+        for (int i = 0; i < moduleDirs.size(); i++) {
+            final Path dir = moduleDirs.get(i);
+            if (absFile.startsWith(dir)
+                    && (result < 0 || dir.getNameCount() > moduleDirs.get(result).getNameCount())) {
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    private void noMatchingProperties(Path dir) {
+        if (failOnNoMatchingProperties) {
+            throw new BuildException(String.format("No .editorconfig properties applicable for files under '%s'", dir),
+                    getLocation());
+        } else {
+            log.warn("No .editorconfig properties applicable for files under '{}'", dir);
         }
+    }
 
+    /**
+     * Queries the {@code .editorconfig} properties for the given {@code file} and runs all applicable {@link Linter}s
+     * against it. The {@link Violation}s found are not reported here, but they are recorded in the resulting
+     * {@link LintedFile} to be passed to {@link #report(LintedFile, ViolationHandler)} later. This method may be called
+     * concurrently from several threads.
+     *
+     * @param file the file to lint, relative to {@link #basedirPath}
+     * @param propertiesCache the {@link DirectoryPropertiesCache} to query the properties with
+     * @param linterFilter the {@link LinterFilter} to select the {@link Linter}s with
+     * @return a new {@link LintedFile}
+     * @throws IOException on I/O problems
+     */
+    LintedFile lint(Path file, DirectoryPropertiesCache propertiesCache, LinterFilter linterFilter)
+            throws IOException {
+        // file relative to basedir
+        final Path absFile = basedirPath.resolve(file);
+        final long start = metrics == null ? 0 : System.nanoTime();
+        final ResourceProperties editorConfigProperties = propertiesCache.queryProperties(absFile);
+        if (metrics != null) {
+            metrics.addPhase(LintMetrics.Phase.PROPERTIES, 0, System.nanoTime() - start);
+        }
+        /* the binary check needs the charset of the file, because e.g. UTF-16 text contains NUL bytes */
+        final Charset useEncoding = CharsetCache
+                .forName(editorConfigProperties.getValue(PropertyType.charset, charset.name(), true));
+        if (binaryFileDetector != null && binaryFileDetector.skip(absFile, useEncoding)) {
+            return LintedFile.binary(file);
+        }
+        LintCache.Entry cacheEntry = null;
+        if (lintCache != null) {
+            if (lintCache.isUpToDate(file, absFile)) {
+                return LintedFile.upToDate(file);
+            }
+            cacheEntry = lintCache.createEntry(absFile);
+        }
+        if (editorConfigProperties.getProperties().isEmpty()) {
+            return LintedFile.unmatched(file);
+        }
+        final long lintStart = metrics == null ? 0 : System.nanoTime();
+        final long size = metrics == null ? 0 : Files.size(absFile);
+        final Resource resource = createResource(absFile, file, useEncoding);
+        final List<Linter> filteredLinters = linterFilter.filter(file);
+        final List<Violation> violations;
+        final ParallelLinter parallel = this.parallelLinter;
+        if (parallel != null && resource instanceof TextResource && !filteredLinters.isEmpty()
+                && parallel.accepts(((TextResource) resource).getText())) {
+            violations = parallel.lint((TextResource) resource, ((TextResource) resource).getText(), filteredLinters,
+                    editorConfigProperties, metrics, size);
+        } else {
+            final RecordingViolationHandler recorder = new RecordingViolationHandler(log);
+            recorder.startFile(resource);
+            for (Linter linter : filteredLinters) {
+                final long linterStart = metrics == null ? 0 : System.nanoTime();
+                linter.process(resource, editorConfigProperties, recorder);
+                if (metrics != null) {
+                    metrics.addLinter(linter, size, System.nanoTime() - linterStart);
+                }
+            }
+            recorder.endFile();
+            violations = recorder.getViolations();
+        }
+        if (metrics != null) {
+            final long end = System.nanoTime();
+            metrics.addPhase(LintMetrics.Phase.LINT, size, end - lintStart);
+            metrics.addFile(file, size, end - start);
+        }
+        return new LintedFile(file, editorConfigProperties, resource, filteredLinters, violations, cacheEntry, false);
     }
 
     /**
-     * A {@link DirectoryScanner} boiler plate.
+     * Logs what {@link #lint(Path, DirectoryPropertiesCache, LinterFilter)} did with the file of the given
+     * {@code lintedFile}. Called on the thread that scans the files rather than in {@code lint()} so that the messages
+     * appear in the scan order also when several threads are linting.
      *
-     * @return A {@link String} array of included files
+     * @param lintedFile the result of {@link #lint(Path, DirectoryPropertiesCache, LinterFilter)}
      */
-    private List<Path> scanIncludedFiles() {
-        final List<Path> result = new ArrayList<>();
-        if (filesets.isEmpty()) {
+    private void logLinted(LintedFile lintedFile) {
+        final Path file = lintedFile.getFile();
+        if (lintedFile.isBinary()) {
+            log.debug("Skipping binary file '{}'", file);
+        } else if (lintedFile.isUpToDate()) {
+            log.debug("Skipping unchanged file '{}'", file);
+        } else {
+            log.info("Processing file '{}'", file);
+            for (Linter linter : lintedFile.getLinters()) {
+                log.trace("Processing file '{}' using linter {}", file, linter.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Passes the {@link Violation}s recorded in the given {@link LintedFile} to the given {@code handler} and re-runs
+     * the {@link Linter}s as long as the {@code handler} asks for it. Must be called on the thread that owns the
+     * {@code handler}.
+     *
+     * @param lintedFile the result of {@link #lint(Path, DirectoryPropertiesCache, LinterFilter)}
+     * @param handler the {@link ViolationHandler} to report to
+     * @throws IOException on I/O problems
+     */
+    void report(LintedFile lintedFile, ViolationHandler handler) throws IOException {
+        final Resource resource = lintedFile.getResource();
+        handler.startFile(resource);
+        for (Violation violation : lintedFile.getViolations()) {
+            handler.handle(violation);
+        }
+        ViolationHandler.ReturnState state = handler.endFile();
+        while (state != ViolationHandler.ReturnState.FINISHED) {
+            for (Linter linter : lintedFile.getLinters()) {
+                log.trace("Processing file '{}' using linter {}", lintedFile.getFile(), linter.getClass().getName());
+                handler.startFile(resource);
+                linter.process(resource, lintedFile.getProperties(), handler);
+            }
+            state = handler.endFile();
+        }
+        if (resource instanceof TextResource) {
+            /* the handler may keep the resource as long as it keeps its violations */
+            ((TextResource) resource).unload();
+        }
+    }
+
+    /**
+     * @return a new {@link ResourcePropertiesService} or one shared via the {@link #propertiesCacheRef} project
+     *         reference
+     * @throws IOException on I/O problems
+     */
+    protected ResourcePropertiesService getResourcePropertiesService() throws IOException {
+        if (propertiesCacheRef == null) {
+            return ResourcePropertiesService.builder() //
+                    .cache(new EditorConfigCache()) //
+                    .build();
+        }
+        final Project project = getProject();
+        synchronized (project) {
+            final Object ref = project.getReference(propertiesCacheRef);
+            if (ref == null) {
+                final ResourcePropertiesService result = ResourcePropertiesService.builder() //
+                        .cache(new EditorConfigCache()) //
+                        .build();
+                project.addReference(propertiesCacheRef, result);
+                log.debug("Registered a new {} under reference '{}'", ResourcePropertiesService.class.getSimpleName(),
+                        propertiesCacheRef);
+                return result;
+            } else if (ref instanceof ResourcePropertiesService) {
+                final ResourcePropertiesService result = (ResourcePropertiesService) ref;
+                if (result.getCache() instanceof EditorConfigCache) {
+                    final int evicted = ((EditorConfigCache) result.getCache()).revalidate();
+                    log.debug("Reusing the {} registered under reference '{}'; evicted {} modified .editorconfig files",
+                            ResourcePropertiesService.class.getSimpleName(), propertiesCacheRef, evicted);
+                }
+                return result;
+            } else {
+                throw new BuildException(String.format("Reference '%s' is not a %s but %s", propertiesCacheRef,
+                        ResourcePropertiesService.class.getName(), ref.getClass().getName()), getLocation());
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if only the files changed according to git should be processed
+     */
+    protected boolean isChangedFilesOnly() {
+        return changedSince != null || onlyStaged;
+    }
+
+    /**
+     * @return {@code true} if only a subset of the files selected by {@link #filesets} is processed, so that the
+     *         subset may legitimately be empty
+     */
+    protected boolean isPartialSelection() {
+        return isChangedFilesOnly();
+    }
+
+    /**
+     * @return {@code null} if {@link #isChangedFilesOnly()} is {@code false}; otherwise the real absolute paths of the
+     *         files changed according to git
+     */
+    private Set<Path> listChangedFiles() {
+        if (!isChangedFilesOnly()) {
+            return null;
+        }
+        try {
+            return GitChangedFiles.list(gitExecutable, basedirPath.toRealPath(), changedSince, onlyStaged, log);
+        } catch (IOException e) {
+            throw new BuildException("Could not list the files changed according to git: " + e.getMessage(), e,
+                    getLocation());
+        }
+    }
+
+    /**
+     * Scans the {@link #filesets} and then the filesets of the {@link #modules} lazily, see {@link FileSetScanner}. If
+     * there are neither {@link #filesets} nor {@link #modules}, the whole {@link Project#getBaseDir()} is scanned. If
+     * {@link #includedFiles} is set, it is used instead of scanning anything.
+     *
+     * @return an {@link Iterator} over the included files relative to {@link Project#getBaseDir()}
+     */
+    Iterator<Path> scanIncludedFiles() {
+        if (filesets.isEmpty() && modules.isEmpty() && includedFiles == null) {
             final FileSet fs = new FileSet();
             fs.setDir(getProject().getBaseDir());
             filesets.add(fs);
         }
+        final List<ResourceCollection> resources = new ArrayList<>(filesets);
+        for (ModuleConfig module : modules) {
+            resources.addAll(module.getFilesets());
+        }
         final Path basedirPath = getProject().getBaseDir().toPath();
-        for (FileSet fs : filesets) {
-            if (excludeNonSourceFiles) {
-                fs.appendExcludes(Constants.DEFAULT_EXCLUDES.toArray(new String[0]));
+        final Iterator<Path> absPaths = includedFiles != null ? includedFiles
+                : FileSetScanner.scan(resources, getProject(), excludeNonSourceFiles);
+        return new Iterator<Path>() {
+            @Override
+            public boolean hasNext() {
+                return absPaths.hasNext();
+            }
+
+            @Override
+            public Path next() {
+                return basedirPath.relativize(absPaths.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Lints all files selected by {@link #filesets} and then every batch of changes in the watched directories until
+     * {@link #watchTimeout} expires or until the current thread is interrupted.
+     *
+     * @param linterFilter the {@link LinterFilter} to select the {@link Linter}s with
+     */
+    private void watch(LinterFilter linterFilter) {
+        final ResourcePropertiesService propertiesService;
+        try {
+            propertiesService = getResourcePropertiesService();
+        } catch (IOException e) {
+            throw new BuildException(e.getMessage(), e, getLocation());
+        }
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+            for (ResourceCollection resources : filesets) {
+                if (resources instanceof FileSet) {
+                    registerTree(watchService, watchedDirs, ((FileSet) resources).getDir(getProject()).toPath());
+                }
+            }
+            Set<Path> included = scanAndLint(scanIncludedFiles(), linterFilter, propertiesService);
+            for (Path file : included) {
+                /* the parents of files selected by resource collections other than file sets */
+                final Path dir = file.getParent();
+                if (dir != null && !watchedDirs.containsValue(dir)) {
+                    watchedDirs.put(dir.register(watchService, WATCHED_EVENT_KINDS), dir);
+                }
             }
-            final DirectoryScanner ds = fs.getDirectoryScanner(getProject());
-            final Path dir = fs.getDir().toPath();
-            for (String includedFile : ds.getIncludedFiles()) {
-                final Path absPath = dir.resolve(includedFile);
-                result.add(basedirPath.relativize(absPath));
+            log.info("Watching {} {} for changes", watchedDirs.size(),
+                    watchedDirs.size() == 1 ? "directory" : "directories");
+            while (true) {
+                WatchKey key = watchTimeout > 0 ? watchService.poll(watchTimeout, TimeUnit.SECONDS)
+                        : watchService.take();
+                if (key == null) {
+                    log.info("Stopped watching after {} s without any change", watchTimeout);
+                    return;
+                }
+                final Set<Path> changedFiles = new HashSet<>();
+                final Set<Path> changedDirs = new HashSet<>();
+                boolean rescan = false;
+                boolean overflow = false;
+                do {
+                    final Path dir = watchedDirs.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                            overflow = true;
+                            continue;
+                        }
+                        final Path path = dir.resolve((Path) event.context());
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            /* the new file may or may not be selected by the filesets */
+                            rescan = true;
+                            if (Files.isDirectory(path)) {
+                                registerTree(watchService, watchedDirs, path);
+                                changedDirs.add(path);
+                            }
+                        }
+                        if (path.getFileName().toString().equals(".editorconfig")) {
+                            changedDirs.add(dir);
+                        }
+                        changedFiles.add(path);
+                    }
+                    if (!key.reset()) {
+                        watchedDirs.remove(key);
+                    }
+                    /* wait for the burst of changes to calm down */
+                    key = watchService.poll(watchDebounce, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                if (overflow) {
+                    log.info("Too many changes; checking all files again");
+                    if (propertiesService.getCache() instanceof EditorConfigCache) {
+                        ((EditorConfigCache) propertiesService.getCache()).revalidate();
+                    }
+                    included = scanAndLint(scanIncludedFiles(), linterFilter, propertiesService);
+                    continue;
+                }
+                if (rescan) {
+                    included = new LinkedHashSet<>();
+                    final Iterator<Path> files = scanIncludedFiles();
+                    while (files.hasNext()) {
+                        included.add(basedirPath.resolve(files.next()).toAbsolutePath().normalize());
+                    }
+                }
+                final Path absBasedir = basedirPath.toAbsolutePath().normalize();
+                final List<Path> dirtyFiles = new ArrayList<>();
+                for (Path file : included) {
+                    if (changedFiles.contains(file) || isUnderAny(file, changedDirs)) {
+                        if (Files.isRegularFile(file)) {
+                            dirtyFiles.add(absBasedir.relativize(file));
+                        }
+                    }
+                }
+                if (dirtyFiles.isEmpty()) {
+                    log.debug("None of the {} changed paths is selected for processing", changedFiles.size());
+                    continue;
+                }
+                log.info("Processing {} changed {}", dirtyFiles.size(), dirtyFiles.size() == 1 ? "file" : "files");
+                if (propertiesService.getCache() instanceof EditorConfigCache) {
+                    ((EditorConfigCache) propertiesService.getCache()).revalidate();
+                }
+                try {
+                    lintFiles(dirtyFiles.iterator(), linterFilter, propertiesService, false);
+                } catch (BuildException e) {
+                    log.error("{}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new BuildException("Could not watch for changes: " + e.getMessage(), e, getLocation());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Stopped watching");
+        }
+    }
+
+    /**
+     * @param file the file to check
+     * @param dirs the directories to check
+     * @return {@code true} if the given {@code file} is located in any of the given {@code dirs} or their
+     *         subdirectories
+     */
+    private static boolean isUnderAny(Path file, Set<Path> dirs) {
+        for (Path parent = file.getParent(); parent != null; parent = parent.getParent()) {
+            if (dirs.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the given {@code root} directory and all its subdirectories except for the ones excluded by
+     * {@link DirectoryScanner#getDefaultExcludes()} with the given {@code watchService}.
+     *
+     * @param watchService the {@link WatchService} to register with
+     * @param watchedDirs a {@link Map} to add the registered directories to
+     * @param root the directory to register
+     * @throws IOException on I/O problems
+     */
+    private void registerTree(final WatchService watchService, final Map<WatchKey, Path> watchedDirs, Path root)
+            throws IOException {
+        final Set<String> excludedNames = new HashSet<>();
+        for (String exclude : DirectoryScanner.getDefaultExcludes()) {
+            /* the excludes of whole directories have the form double star, slash, name, slash, double star */
+            if (exclude.startsWith("**/") && exclude.endsWith("/**") && exclude.length() > 6) {
+                excludedNames.add(exclude.substring(3, exclude.length() - 3));
+            }
+        }
+        Files.walkFileTree(root.toAbsolutePath().normalize(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                final Path name = dir.getFileName();
+                if (name != null && excludedNames.contains(name.toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watchedDirs.put(dir.register(watchService, WATCHED_EVENT_KINDS), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("Cannot watch {}: {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Lints the given {@code files} logging rather than throwing the {@link BuildException}s.
+     *
+     * @param files the files to lint, relative to {@link #basedirPath}
+     * @param linterFilter the {@link LinterFilter} to select the {@link Linter}s with
+     * @param propertiesService the {@link ResourcePropertiesService} to use
+     * @return the absolute normalized paths of all the given {@code files}
+     */
+    private Set<Path> scanAndLint(final Iterator<Path> files, LinterFilter linterFilter,
+            ResourcePropertiesService propertiesService) {
+        final Set<Path> result = new LinkedHashSet<>();
+        try {
+            lintFiles(new Iterator<Path>() {
+                @Override
+                public boolean hasNext() {
+                    return files.hasNext();
+                }
+
+                @Override
+                public Path next() {
+                    final Path file = files.next();
+                    result.add(basedirPath.resolve(file).toAbsolutePath().normalize());
+                    return file;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            }, linterFilter, propertiesService, true);
+        } catch (BuildException e) {
+            log.error("{}", e.getMessage());
+            /* the linting may have stopped early */
+            while (files.hasNext()) {
+                result.add(basedirPath.resolve(files.next()).toAbsolutePath().normalize());
             }
         }
         return result;
@@ -246,6 +1084,14 @@ public abstract class AbstractEditorconfigTask extends Task {
         this.addLintersFromClassPath = addLintersFromClassPath;
     }
 
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public void setChangedSince(String changedSince) {
+        this.changedSince = changedSince;
+    }
+
     public void setEncoding(String encoding) {
         this.encoding = encoding;
     }
@@ -258,8 +1104,48 @@ public abstract class AbstractEditorconfigTask extends Task {
         this.failOnNoMatchingProperties = failOnNoMatchingProperties;
     }
 
+    public void setGitExecutable(String gitExecutable) {
+        this.gitExecutable = gitExecutable;
+    }
+
     public void setLogLevel(Level logLevel) {
         this.logLevel = logLevel;
         this.log = new AntLintLogger(this, logLevel);
     }
+
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public void setOnlyStaged(boolean onlyStaged) {
+        this.onlyStaged = onlyStaged;
+    }
+
+    public void setPropertiesCacheRef(String propertiesCacheRef) {
+        this.propertiesCacheRef = propertiesCacheRef;
+    }
+
+    public void setSkipBinaryFiles(boolean skipBinaryFiles) {
+        this.skipBinaryFiles = skipBinaryFiles;
+    }
+
+    public void setSlowestFiles(int slowestFiles) {
+        this.slowestFiles = slowestFiles;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public void setWatchDebounce(int watchDebounce) {
+        this.watchDebounce = watchDebounce;
+    }
+
+    public void setWatchTimeout(int watchTimeout) {
+        this.watchTimeout = watchTimeout;
+    }
 }
@@ -16,11 +16,15 @@
  */
 package org.ec4j.ant;
 
+import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.DefaultLogger;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.ProjectComponent;
+import org.apache.tools.ant.taskdefs.RecorderEntry;
 import org.ec4j.maven.lint.api.Logger;
 
 /**
@@ -49,7 +53,15 @@ public class AntLintLogger implements Logger {
         static final char DELIM_START = '{';
         static final char DELIM_STOP = '}';
         static final String DELIM_STR = "{}";
+        private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+            @Override
+            protected StringBuilder initialValue() {
+                return new StringBuilder(256);
+            }
+        };
         private static final char ESCAPE_CHAR = '\\';
+        /** Buffers that have grown bigger than this are not kept for reuse */
+        private static final int MAX_BUFFER_CAPACITY = 8192;
 
         private static void booleanArrayAppend(StringBuilder sbuf, boolean[] a) {
             sbuf.append('[');
@@ -143,8 +155,13 @@ public class AntLintLogger implements Logger {
 
             int i = 0;
             int j;
-            // use string builder for better multicore performance
-            final StringBuilder result = new StringBuilder(message.length() + 50);
+            // reuse a per thread string builder to avoid allocating a new one for every message
+            StringBuilder result = BUFFER.get();
+            if (result.capacity() > MAX_BUFFER_CAPACITY) {
+                result = new StringBuilder(message.length() + 50);
+                BUFFER.set(result);
+            }
+            result.setLength(0);
 
             int L;
             for (L = 0; L < params.length; L++) {
@@ -172,13 +189,13 @@ public class AntLintLogger implements Logger {
                             // itself escaped: "abc x:\\{}"
                             // we have to consume one backward slash
                             result.append(message, i, j - 1);
-                            deeplyAppendParameter(result, params[L], new HashMap<Object[], Object>());
+                            deeplyAppendParameter(result, params[L], null);
                             i = j + 2;
                         }
                     } else {
                         // normal case
                         result.append(message, i, j);
-                        deeplyAppendParameter(result, params[L], new HashMap<Object[], Object>());
+                        deeplyAppendParameter(result, params[L], null);
                         i = j + 2;
                     }
                 }
@@ -232,6 +249,10 @@ public class AntLintLogger implements Logger {
         }
 
         private static void objectArrayAppend(StringBuilder sbuf, Object[] a, Map<Object[], Object> seenMap) {
+            if (seenMap == null) {
+                // created lazily because most of the parameters are no arrays
+                seenMap = new HashMap<Object[], Object>();
+            }
             sbuf.append('[');
             if (!seenMap.containsKey(a)) {
                 seenMap.put(a, null);
@@ -272,17 +293,79 @@ public class AntLintLogger implements Logger {
 
     }
 
-    private final ProjectComponent delegate;
-    private Level level;
-
     public enum Level {
-        ERROR(Project.MSG_ERR), WARN(Project.MSG_WARN), INFO(Project.MSG_INFO), DEBUG(Project.MSG_INFO), TRACE(Project.MSG_INFO);
+        ERROR(Project.MSG_ERR), WARN(Project.MSG_WARN), INFO(Project.MSG_INFO), DEBUG(Project.MSG_VERBOSE), TRACE(Project.MSG_DEBUG);
         private final int antLevel;
         Level(int antLevel) {
             this.antLevel = antLevel;
         }
     }
 
+    /** The {@code msgOutputLevel} field of {@link DefaultLogger} or {@code null} if it is not accessible */
+    private static final Field MSG_OUTPUT_LEVEL_FIELD;
+
+    /** The {@code loglevel} field of {@link RecorderEntry} or {@code null} if it is not accessible */
+    private static final Field RECORDER_LOG_LEVEL_FIELD;
+
+    static {
+        MSG_OUTPUT_LEVEL_FIELD = field(DefaultLogger.class, "msgOutputLevel");
+        RECORDER_LOG_LEVEL_FIELD = field(RecorderEntry.class, "loglevel");
+    }
+
+    private static Field field(Class<?> cl, String name) {
+        try {
+            final Field result = cl.getDeclaredField(name);
+            result.setAccessible(true);
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param listener the {@link BuildListener} to inspect
+     * @return the most verbose Ant message priority the given {@code listener} outputs; {@link Project#MSG_DEBUG} if
+     *         the listener is not known to filter messages
+     */
+    static int getMessageOutputLevel(BuildListener listener) {
+        final Field field;
+        if (listener instanceof DefaultLogger) {
+            field = MSG_OUTPUT_LEVEL_FIELD;
+        } else if (listener instanceof RecorderEntry) {
+            field = RECORDER_LOG_LEVEL_FIELD;
+        } else {
+            field = null;
+        }
+        if (field != null) {
+            try {
+                return field.getInt(listener);
+            } catch (IllegalAccessException e) {
+                return Project.MSG_DEBUG;
+            }
+        }
+        return Project.MSG_DEBUG;
+    }
+
+    /**
+     * Calls {@link #updateOutputLevel()} if the given {@code log} is an {@link AntLintLogger}.
+     *
+     * @param log the {@link Logger} to update
+     */
+    static void updateOutputLevel(Logger log) {
+        if (log instanceof AntLintLogger) {
+            ((AntLintLogger) log).updateOutputLevel();
+        }
+    }
+
+    private final ProjectComponent delegate;
+    private Level level;
+
+    /**
+     * The most verbose Ant message priority any of the {@link BuildListener}s of the {@link Project} outputs, as
+     * determined by the last {@link #updateOutputLevel()} call
+     */
+    private volatile int outputLevel = Project.MSG_DEBUG;
+
     public AntLintLogger(ProjectComponent delegate, Level level) {
         super();
         this.delegate = delegate;
@@ -293,8 +376,46 @@ public class AntLintLogger implements Logger {
         log(Level.DEBUG, message, params);
     }
 
+    /**
+     * @param level the {@link Level} to check
+     * @return {@code true} if messages logged with the given {@code level} pass the {@link Level} of this
+     *         {@link AntLintLogger} and if they would be output by some of Ant's {@link BuildListener}s
+     */
+    boolean isEnabled(Level level) {
+        return this.level.ordinal() >= level.ordinal() && isOutput(level.antLevel);
+    }
+
+    /**
+     * @param antLevel the Ant message priority to check
+     * @return {@code true} if some of the {@link BuildListener}s of the {@link Project} outputs messages with the
+     *         given {@code antLevel}, as determined by the last {@link #updateOutputLevel()} call
+     */
+    boolean isOutput(int antLevel) {
+        return antLevel <= outputLevel;
+    }
+
+    /**
+     * Determines the most verbose Ant message priority any of the {@link BuildListener}s of the {@link Project}
+     * outputs. The tasks call this at the beginning of every {@code execute()}, so that the {@link BuildListener}s
+     * added in the meantime, e.g. by {@code <record>}, are taken into account, while checking whether a message would
+     * be output boils down to comparing two numbers. {@link BuildListener}s other than {@link DefaultLogger} and
+     * {@link RecorderEntry} are assumed to output all messages; the {@link Level} of this {@link AntLintLogger} still
+     * applies to them.
+     */
+    public void updateOutputLevel() {
+        final Project project = delegate.getProject();
+        int result = Project.MSG_DEBUG;
+        if (project != null) {
+            result = Project.MSG_ERR;
+            for (Object listener : project.getBuildListeners()) {
+                result = Math.max(result, getMessageOutputLevel((BuildListener) listener));
+            }
+        }
+        outputLevel = result;
+    }
+
     void log(Level level, String message, Object[] params) {
-        if (this.level.ordinal() >= level.ordinal()) {
+        if (isEnabled(level)) {
             delegate.log(Slf4jFormatter.format(message, params), level.antLevel);
         }
     }
@@ -307,34 +428,34 @@ public class AntLintLogger implements Logger {
         log(Level.INFO, message, params);
     }
 
-    /** @return always {@code true} */
+    /** @return {@code true} if messages logged via {@link #debug(String, Object...)} would be output */
     @Override
     public boolean isDebugEnabled() {
-        return this.level.ordinal() >= Level.DEBUG.ordinal();
+        return isEnabled(Level.DEBUG);
     }
 
-    /** @return always {@code true} */
+    /** @return {@code true} if messages logged via {@link #error(String, Object...)} would be output */
     @Override
     public boolean isErrorEnabled() {
-        return this.level.ordinal() >= Level.ERROR.ordinal();
+        return isEnabled(Level.ERROR);
     }
 
-    /** @return always {@code true} */
+    /** @return {@code true} if messages logged via {@link #info(String, Object...)} would be output */
     @Override
     public boolean isInfoEnabled() {
-        return this.level.ordinal() >= Level.INFO.ordinal();
+        return isEnabled(Level.INFO);
     }
 
-    /** @return always {@code true} */
+    /** @return {@code true} if messages logged via {@link #trace(String, Object...)} would be output */
     @Override
     public boolean isTraceEnabled() {
-        return this.level.ordinal() >= Level.TRACE.ordinal();
+        return isEnabled(Level.TRACE);
     }
 
-    /** @return always {@code true} */
+    /** @return {@code true} if messages logged via {@link #warn(String, Object...)} would be output */
     @Override
     public boolean isWarnEnabled() {
-        return this.level.ordinal() >= Level.WARN.ordinal();
+        return isEnabled(Level.WARN);
     }
 
     public void trace(String message, Object... params) {
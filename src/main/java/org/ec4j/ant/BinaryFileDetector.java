@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells binary files from text files by looking at the first {@link #SNIFF_LENGTH} bytes of a file only, so that
+ * binary files missed by the exclude patterns can be skipped before their whole content is decoded. A file is
+ * considered binary if its head contains a {@code NUL} byte or if more than {@link #MAX_MALFORMED_PERCENT} percent of
+ * its head cannot be decoded using the given encoding. The {@code NUL} check is left out for the {@code UTF-16} and
+ * {@code UTF-32} encodings where {@code NUL} bytes are common in text. An empty file and a file starting with a
+ * {@code UTF-16} or {@code UTF-32} byte order mark are text files.
+ * <p>
+ * Besides that, this class counts the files found to be binary and their sizes. It is thread safe.
+ */
+class BinaryFileDetector {
+
+    /** The percentage of malformed input in the head of a file above which the file is considered binary */
+    static final int MAX_MALFORMED_PERCENT = 10;
+
+    /** The number of bytes to read from the beginning of each file */
+    static final int SNIFF_LENGTH = 8192;
+
+    /**
+     * @param head the first bytes of a file
+     * @param length the number of valid bytes in {@code head}
+     * @return {@code true} if the given {@code head} starts with a {@code UTF-16} or {@code UTF-32} byte order mark
+     */
+    static boolean hasUnicodeBom(byte[] head, int length) {
+        if (length >= 4 && ((head[0] == 0 && head[1] == 0 && head[2] == (byte) 0xfe && head[3] == (byte) 0xff)
+                || (head[0] == (byte) 0xff && head[1] == (byte) 0xfe && head[2] == 0 && head[3] == 0))) {
+            return true;
+        }
+        return length >= 2 && ((head[0] == (byte) 0xfe && head[1] == (byte) 0xff)
+                || (head[0] == (byte) 0xff && head[1] == (byte) 0xfe));
+    }
+
+    /**
+     * @param head the first bytes of a file
+     * @param length the number of valid bytes in {@code head}
+     * @param encoding the encoding the file is expected to have
+     * @return {@code true} if the given {@code head} looks like a part of a binary file
+     */
+    static boolean isBinary(byte[] head, int length, Charset encoding) {
+        if (length == 0 || hasUnicodeBom(head, length)) {
+            return false;
+        }
+        final String name = encoding.name();
+        if (!name.startsWith("UTF-16") && !name.startsWith("UTF-32")) {
+            for (int i = 0; i < length; i++) {
+                if (head[i] == 0) {
+                    return true;
+                }
+            }
+        }
+        final CharsetDecoder decoder = encoding.newDecoder() //
+                .onMalformedInput(CodingErrorAction.REPORT) //
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        final ByteBuffer in = ByteBuffer.wrap(head, 0, length);
+        final CharBuffer out = CharBuffer.allocate(1024);
+        int malformed = 0;
+        while (in.hasRemaining()) {
+            /* endOfInput is false because a multi byte sequence may be cut off at the end of the head */
+            final CoderResult result = decoder.decode(in, out, false);
+            if (result.isError()) {
+                malformed += result.length();
+                in.position(in.position() + result.length());
+            } else if (result.isOverflow()) {
+                out.clear();
+            } else {
+                break;
+            }
+        }
+        return malformed * 100 > length * MAX_MALFORMED_PERCENT;
+    }
+
+    private final AtomicLong skippedBytes = new AtomicLong();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+
+    /**
+     * @return the total size in bytes of the files for which {@link #skip(Path, Charset)} returned {@code true}
+     */
+    public long getSkippedBytes() {
+        return skippedBytes.get();
+    }
+
+    /**
+     * @return the number of files for which {@link #skip(Path, Charset)} returned {@code true}
+     */
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    /**
+     * @param file the file to check
+     * @param encoding the encoding the file is expected to have
+     * @return {@code true} if the given {@code file} looks binary and should thus be skipped
+     * @throws IOException on I/O problems
+     */
+    public boolean skip(Path file, Charset encoding) throws IOException {
+        final byte[] head = new byte[SNIFF_LENGTH];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) >= 0) {
+                length += read;
+            }
+        }
+        if (isBinary(head, length, encoding)) {
+            skippedFiles.incrementAndGet();
+            skippedBytes.addAndGet(Files.size(file));
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the values of the {@code charset} {@code .editorconfig} property and of the {@code encoding} task
+ * attribute to {@link Charset}s, so that {@link Charset#forName(String)} with its alias lookups and synchronization
+ * is called only once per distinct name instead of once per file. This class is thread safe.
+ */
+class CharsetCache {
+
+    private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+
+    /** The {@code .editorconfig} name of UTF-8 with a byte order mark */
+    static final String UTF_8_BOM = "utf-8-bom";
+
+    static {
+        CHARSETS.put("latin1", StandardCharsets.ISO_8859_1);
+        CHARSETS.put("utf-8", StandardCharsets.UTF_8);
+        /*
+         * The byte order mark is decoded to U+FEFF and encoded back unchanged, so plain UTF-8 keeps such files intact
+         * byte by byte
+         */
+        CHARSETS.put(UTF_8_BOM, StandardCharsets.UTF_8);
+        CHARSETS.put("utf-16be", StandardCharsets.UTF_16BE);
+        CHARSETS.put("utf-16le", StandardCharsets.UTF_16LE);
+    }
+
+    /**
+     * @param name a {@code charset} value as used in {@code .editorconfig} files or any name accepted by
+     *        {@link Charset#forName(String)}
+     * @return the {@link Charset} for the given {@code name}
+     * @throws java.nio.charset.UnsupportedCharsetException if the given {@code name} is not supported
+     */
+    static Charset forName(String name) {
+        Charset result = CHARSETS.get(name);
+        if (result == null) {
+            result = Charset.forName(name);
+            /* two threads may compute the same result concurrently, but the results are equal */
+            CHARSETS.put(name, result);
+        }
+        return result;
+    }
+
+    private CharsetCache() {
+    }
+
+}
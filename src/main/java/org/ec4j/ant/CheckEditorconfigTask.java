@@ -16,11 +16,27 @@
  */
 package org.ec4j.ant;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.tools.ant.BuildException;
+import org.ec4j.ant.AntLintLogger.Level;
+import org.ec4j.maven.lint.api.Linter;
 import org.ec4j.maven.lint.api.Resource;
-import org.ec4j.maven.lint.api.ViolationCollector;
 import org.ec4j.maven.lint.api.ViolationHandler;
 
 /**
@@ -33,6 +49,18 @@ import org.ec4j.maven.lint.api.ViolationHandler;
  */
 public class CheckEditorconfigTask extends AbstractEditorconfigTask {
 
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Files having more characters than this are linted using several threads if {@link #threads} is not {@code 1}:
+     * all {@link Linter}s applicable to such a file run concurrently and the line-oriented ones, such as
+     * {@code TextLinter}, additionally process chunks of about this size concurrently. The violations are reported in
+     * the same order as if the file was processed on a single thread. {@code 0} means never to split any file.
+     *
+     * @since 0.0.2
+     */
+    private int chunkSize = 1024 * 1024;
+
     /**
      * Tells the mojo what to do in case formatting violations are found. if {@code true}, all violations will be
      * reported on the console as ERRORs and the build will fail. if {@code false}, all violations will be reported on
@@ -42,21 +70,404 @@ public class CheckEditorconfigTask extends AbstractEditorconfigTask {
      */
     private boolean failOnFormatViolation = true;
 
+    /**
+     * If greater than {@code 0}, only the first this number of violations are logged and the number of the remaining
+     * ones is logged at the end. The {@link #reportFile} and the {@link #shardReport} still get all violations. Handy
+     * when enabling the check on a big legacy source tree. If {@code 0}, all violations are logged.
+     *
+     * @since 0.0.2
+     */
+    private int maxLoggedViolations;
+
+    /**
+     * If greater than {@code 0} and {@link #failOnFormatViolation} is {@code true}, the task fails as soon as this
+     * number of violations is reported. The files not checked yet are not checked at all and the files being linted
+     * on other threads are abandoned. Handy in pre-commit hooks where only the presence of violations matters. If
+     * {@code 0}, all files are checked.
+     *
+     * @since 0.0.2
+     */
+    private int maxViolations;
+
+    /**
+     * A file to stream the violations to as soon as they are found in the {@link #reportFormat}. No matter how many
+     * violations there are, they are never held in memory all at once. The file is replaced only after all files were
+     * checked or after {@link #maxViolations} was reached. If {@code null}, no such file is written.
+     *
+     * @since 0.0.2
+     */
+    private File reportFile;
+
+    /**
+     * The format of the {@link #reportFile}: {@code xml} for checkstyle XML, {@code sarif} for SARIF 2.1.0 or
+     * {@code jsonl} for JSON Lines, i.e. one JSON object per violation and line. If {@code null}, the format is implied
+     * by the extension of the {@link #reportFile}: {@code .xml}, {@code .sarif}, {@code .sarif.json} or {@code .jsonl};
+     * the task fails on any other extension.
+     *
+     * @since 0.0.2
+     */
+    private String reportFormat;
+
+    /**
+     * The address of a running {@link ServerEditorconfigTask} in the form {@code host:port} or just {@code port} for
+     * the loopback interface. If set, the files are still selected by this task, but they are checked by the server and
+     * the messages of the server are logged by this task. Custom {@link #linters}, {@link #cacheFile},
+     * {@link #gitExecutable}, {@link #metricsFile} and {@link #reportFile} are not supported in this mode; they can be
+     * set on the server. The access token is read from {@link #serverPortFile} which is thus required. If {@code null},
+     * the port is read from {@link #serverPortFile} too.
+     *
+     * @since 0.0.2
+     */
+    private String server;
+
+    /**
+     * The {@code portFile} of a running {@link ServerEditorconfigTask} to read the access token and, unless
+     * {@link #server} is set, the port of the server from. If both this and {@link #server} are {@code null}, the
+     * files are checked by this task itself.
+     *
+     * @since 0.0.2
+     */
+    private File serverPortFile;
+
+    /**
+     * If {@code true}, the files are distributed among the shards so that all shards have about the same number of
+     * bytes to check. This requires scanning all files and reading their sizes before checking the first one. If
+     * {@code false}, a file belongs to the shard given by the hash of its path relative to the basedir. See
+     * {@link #shardCount}.
+     *
+     * @since 0.0.2
+     */
+    private boolean shardBySize;
+
+    /**
+     * The number of shards to split the files into, typically the number of CI nodes checking the same source tree
+     * together. Each shard is checked by a separate execution having a distinct {@link #shardIndex}. The splitting is
+     * deterministic, so all executions must see the same files and the same {@link #shardBySize} value. {@code 1}
+     * means to check all files.
+     *
+     * @since 0.0.2
+     */
+    private int shardCount = 1;
+
+    /**
+     * The zero based index of the shard to check, see {@link #shardCount}.
+     *
+     * @since 0.0.2
+     */
+    private int shardIndex;
+
+    /**
+     * A file to write the number of checked files and the violations found in the current shard to. The reports of
+     * all shards can be combined by {@link MergeEditorconfigReportsTask} that also fails the build if there are any
+     * violations. The report is written even if this task fails due to violations or stops early due to
+     * {@link #maxViolations}. If {@code null}, no report is written.
+     *
+     * @since 0.0.2
+     */
+    private File shardReport;
+
     /** {@inheritDoc} */
     @Override
     protected ViolationHandler createHandler() {
-        return new ViolationCollector(failOnFormatViolation, "ant editorconfigFormat", log);
+        final List<ViolationReporter> reporters = new ArrayList<>();
+        try {
+            if (reportFile != null) {
+                reporters.add(ViolationReporter.open(reportFile.toPath(), getReportFormat(), basedirPath));
+            }
+            if (shardReport != null) {
+                reporters.add(new ShardReport.Reporter(shardReport.toPath(), shardIndex, shardCount));
+            }
+        } catch (IOException e) {
+            for (ViolationReporter reporter : reporters) {
+                try {
+                    reporter.close();
+                } catch (IOException ignored) {
+                    /* the first failure is more interesting */
+                }
+            }
+            throw new BuildException("Could not create a violation report: " + e.getMessage(), e, getLocation());
+        }
+        return new ReportingViolationHandler(failOnFormatViolation, "ant editorconfigFormat", log, maxViolations,
+                maxLoggedViolations, reporters);
+    }
+
+    @Override
+    ParallelLinter createParallelLinter(int threads) {
+        return chunkSize > 0 ? new ParallelLinter(threads, chunkSize, log) : null;
     }
 
     /** {@inheritDoc} */
     @Override
     protected Resource createResource(Path absFile, Path relFile, Charset encoding) {
         log.debug("Creating a {} for path '{}' with encoding '{}'", Resource.class.getSimpleName(), relFile, encoding);
-        return new Resource(absFile, relFile, encoding);
+        return new TextResource(absFile, relFile, encoding);
+    }
+
+    /**
+     * @return the {@link ViolationReporter.Format} set by {@link #reportFormat} or implied by the {@link #reportFile}
+     * @throws BuildException if the {@link #reportFormat} is unknown or if it is not set and the {@link #reportFile}
+     *         has an extension not implying any {@link ViolationReporter.Format}
+     */
+    private ViolationReporter.Format getReportFormat() {
+        if (reportFormat != null) {
+            final ViolationReporter.Format result = ViolationReporter.Format.forName(reportFormat);
+            if (result == null) {
+                throw new BuildException(String.format("Unknown reportFormat '%s'; use xml, sarif or jsonl",
+                        reportFormat), getLocation());
+            }
+            return result;
+        }
+        final ViolationReporter.Format result = ViolationReporter.Format.forFile(reportFile.toPath());
+        if (result == null) {
+            throw new BuildException(String.format("Cannot tell the format of the reportFile '%s' from its name; set"
+                    + " reportFormat to xml, sarif or jsonl", reportFile), getLocation());
+        }
+        return result;
+    }
+
+    /**
+     * Checks the files either locally or via the {@link #server} if set.
+     */
+    @Override
+    public void execute() {
+        AntLintLogger.updateOutputLevel(log);
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new BuildException(String.format(
+                    "shardIndex must be at least 0 and less than shardCount; found shardIndex %d and shardCount %d",
+                    shardIndex, shardCount), getLocation());
+        }
+        if (shardCount > 1 && watch) {
+            throw new BuildException("watch cannot be combined with shardCount", getLocation());
+        }
+        final boolean remote = server != null || serverPortFile != null;
+        if (shardReport != null && remote) {
+            throw new BuildException("shardReport cannot be combined with server", getLocation());
+        }
+        if (!remote) {
+            super.execute();
+        } else {
+            checkViaServer();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean isPartialSelection() {
+        return super.isPartialSelection() || shardCount > 1;
+    }
+
+    /**
+     * @return the files of the current shard if {@link #shardCount} is greater than {@code 1}, otherwise all files
+     *         selected by {@link #filesets}
+     */
+    @Override
+    Iterator<Path> scanIncludedFiles() {
+        final Iterator<Path> files = super.scanIncludedFiles();
+        if (shardCount <= 1) {
+            return files;
+        }
+        log.info("Checking shard {} of {} shards", shardIndex, shardCount);
+        if (!shardBySize) {
+            return Sharding.byHash(files, shardIndex, shardCount);
+        }
+        try {
+            return Sharding.bySize(files, getProject().getBaseDir().toPath(), shardIndex, shardCount);
+        } catch (IOException e) {
+            throw new BuildException("Could not read the size of a file: " + e.getMessage(), e, getLocation());
+        }
+    }
+
+    private void checkViaServer() {
+        if (watch) {
+            throw new BuildException("watch cannot be combined with server", getLocation());
+        }
+        if (!modules.isEmpty()) {
+            throw new BuildException("modules cannot be combined with server", getLocation());
+        }
+        if (!addLintersFromClassPath || !linters.isEmpty()) {
+            throw new BuildException(
+                    "Linters cannot be configured when checking via a server; the server uses the linters found on its class path",
+                    getLocation());
+        }
+        if (cacheFile != null || metricsFile != null || reportFile != null || reportFormat != null
+                || !"git".equals(gitExecutable)) {
+            throw new BuildException(
+                    "cacheFile, gitExecutable, metricsFile, reportFile and reportFormat cannot be set when checking via a server; set them on the server instead",
+                    getLocation());
+        }
+        if (serverPortFile == null) {
+            throw new BuildException("Set serverPortFile to read the access token of the editorconfig server from",
+                    getLocation());
+        }
+        Level remoteLevel = logLevel;
+        if (log instanceof AntLintLogger) {
+            /* there is no point in sending messages that we would not output */
+            for (Level level : Level.values()) {
+                if (((AntLintLogger) log).isEnabled(level)) {
+                    remoteLevel = level;
+                }
+            }
+        }
+        final Map<String, Object> options = new LinkedHashMap<>();
+        options.put("changedSince", changedSince);
+        options.put("chunkSize", chunkSize);
+        options.put("encoding", encoding);
+        options.put("failOnFormatViolation", failOnFormatViolation);
+        options.put("failOnNoMatchingProperties", failOnNoMatchingProperties);
+        options.put("logLevel", remoteLevel);
+        options.put("maxLoggedViolations", maxLoggedViolations);
+        options.put("maxViolations", maxViolations);
+        options.put("onlyStaged", onlyStaged);
+        options.put("skipBinaryFiles", skipBinaryFiles);
+        options.put("slowestFiles", slowestFiles);
+        options.put("threads", threads);
+
+        final String[] portAndToken;
+        try {
+            portAndToken = ServerProtocol.readPortFile(serverPortFile.toPath());
+        } catch (IOException e) {
+            throw new BuildException("Could not read the editorconfig server port file: " + e.getMessage(), e,
+                    getLocation());
+        }
+        final String address = server != null ? server : portAndToken[0];
+        try (Socket socket = new Socket()) {
+            socket.connect(ServerProtocol.parseAddress(address), CONNECT_TIMEOUT_MILLIS);
+            final Writer out = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            ServerProtocol.writeLine(out, ServerProtocol.HEADER, null);
+            ServerProtocol.writeLine(out, ServerProtocol.TOKEN, portAndToken[1]);
+            ServerProtocol.writeLine(out, ServerProtocol.CHECK, null);
+            ServerProtocol.writeLine(out, ServerProtocol.BASEDIR, getProject().getBaseDir().getAbsolutePath());
+            for (Map.Entry<String, Object> option : options.entrySet()) {
+                if (option.getValue() != null) {
+                    ServerProtocol.writeLine(out, ServerProtocol.OPTION, option.getKey() + " " + option.getValue());
+                }
+            }
+
+            /* send the files on another thread so that the server never blocks on sending us the messages */
+            final Exception[] sendFailure = new Exception[1];
+            final Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final File basedir = getProject().getBaseDir();
+                        final Iterator<Path> files = scanIncludedFiles();
+                        while (files.hasNext() && !socket.isOutputShutdown()) {
+                            ServerProtocol.writeLine(out, ServerProtocol.FILE,
+                                    new File(basedir, files.next().toString()).getAbsolutePath());
+                        }
+                        ServerProtocol.writeLine(out, ServerProtocol.END, null);
+                        out.flush();
+                        socket.shutdownOutput();
+                    } catch (IOException | RuntimeException e) {
+                        sendFailure[0] = e;
+                        try {
+                            /* let the server know that no more files will come */
+                            socket.shutdownOutput();
+                        } catch (IOException ignored) {
+                            /* the connection is broken anyway */
+                        }
+                    }
+                }
+            }, "editorconfig-client");
+            sender.setDaemon(true);
+            sender.start();
+
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String failure = "The editorconfig server closed the connection unexpectedly";
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String[] parts = ServerProtocol.split(line);
+                if (ServerProtocol.LOG.equals(parts[0])) {
+                    final int space = parts[1].indexOf(' ');
+                    log(parts[1].substring(space + 1), Integer.parseInt(parts[1].substring(0, space)));
+                } else if (ServerProtocol.OK.equals(parts[0])) {
+                    failure = null;
+                    break;
+                } else {
+                    failure = parts[1];
+                    break;
+                }
+            }
+            if (failure != null && !socket.isOutputShutdown()) {
+                /* the server does not read any more files; stop the sender even if it is blocked writing */
+                try {
+                    socket.shutdownOutput();
+                } catch (IOException ignored) {
+                    /* the sender has shut the output down meanwhile or the connection is broken anyway */
+                }
+            }
+            /* the socket is closed only after the sender is done with it */
+            sender.join();
+            if (sendFailure[0] instanceof BuildException) {
+                /* selecting the files failed on our side */
+                throw (BuildException) sendFailure[0];
+            }
+            if (failure != null) {
+                /* the server's message explains more than the broken connection the sender saw afterwards */
+                throw new BuildException(failure, getLocation());
+            }
+            if (sendFailure[0] != null) {
+                /* the server may have checked only some of the files */
+                throw new BuildException("Could not send all files to the editorconfig server " + address + ": "
+                        + sendFailure[0].getMessage(), sendFailure[0], getLocation());
+            }
+        } catch (IOException e) {
+            throw new BuildException("Could not check via editorconfig server " + address + ": " + e.getMessage(), e,
+                    getLocation());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Interrupted while waiting for the editorconfig server", e, getLocation());
+        }
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
     }
 
     public void setFailOnFormatViolation(boolean failOnFormatViolation) {
         this.failOnFormatViolation = failOnFormatViolation;
     }
 
+    public void setMaxLoggedViolations(int maxLoggedViolations) {
+        this.maxLoggedViolations = maxLoggedViolations;
+    }
+
+    public void setMaxViolations(int maxViolations) {
+        this.maxViolations = maxViolations;
+    }
+
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public void setReportFormat(String reportFormat) {
+        this.reportFormat = reportFormat;
+    }
+
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    public void setServerPortFile(File serverPortFile) {
+        this.serverPortFile = serverPortFile;
+    }
+
+    public void setShardBySize(boolean shardBySize) {
+        this.shardBySize = shardBySize;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    public void setShardReport(File shardReport) {
+        this.shardReport = shardReport;
+    }
+
 }
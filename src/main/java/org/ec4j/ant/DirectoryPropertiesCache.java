@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ec4j.core.ResourceProperties;
+import org.ec4j.core.ResourcePropertiesService;
+import org.ec4j.core.model.Ec4jPath.Ec4jPaths;
+import org.ec4j.core.model.EditorConfig;
+import org.ec4j.core.model.Property;
+import org.ec4j.core.model.Section;
+
+/**
+ * Resolves {@code .editorconfig} properties like {@link ResourcePropertiesService#queryProperties(org.ec4j.core.Resource)}
+ * does, but the chain of {@code .editorconfig} files applicable to a directory is looked up only once per directory
+ * rather than once per file. Querying the properties of a file thus boils down to matching the file's path against
+ * the (already compiled) globs of the {@link Section}s in that chain.
+ * <p>
+ * The file system is supposed not to change during the lifetime of an instance of this class. This class is thread
+ * safe.
+ */
+class DirectoryPropertiesCache {
+
+    /**
+     * An {@link EditorConfig} applicable to some directory together with the path of that directory relative to the
+     * directory containing the {@code .editorconfig} file.
+     */
+    private static class Scope {
+        /** The path of the directory relative to the {@code .editorconfig} file's directory, using {@code /} */
+        private final String prefix;
+        private final List<Section> sections;
+
+        Scope(String prefix, List<Section> sections) {
+            super();
+            this.prefix = prefix;
+            this.sections = sections;
+        }
+
+        String relativize(String fileName) {
+            return prefix.isEmpty() ? fileName : prefix + "/" + fileName;
+        }
+    }
+
+    /**
+     * The {@code .editorconfig} files applicable to a directory, ordered from the outermost to the innermost one.
+     */
+    private static class Chain {
+        private static final Chain EMPTY = new Chain(null, Collections.<Scope>emptyList());
+
+        private final Path dir;
+        private final List<Scope> scopes;
+
+        Chain(Path dir, List<Scope> scopes) {
+            super();
+            this.dir = dir;
+            this.scopes = scopes;
+        }
+
+        /**
+         * @param childDir the child directory
+         * @param own the {@code .editorconfig} file in {@code childDir} or {@code null} if there is none
+         * @return a new {@link Chain} for the given child directory of {@link #dir}
+         */
+        Chain child(Path childDir, EditorConfig own) {
+            final List<Scope> result = new ArrayList<>(scopes.size() + 1);
+            if (!scopes.isEmpty() && (own == null || !own.isRoot())) {
+                final String childName = childDir.getFileName().toString();
+                for (Scope scope : scopes) {
+                    result.add(new Scope(scope.relativize(childName), scope.sections));
+                }
+            }
+            if (own != null) {
+                result.add(new Scope("", own.getSections()));
+            }
+            return new Chain(childDir, Collections.unmodifiableList(result));
+        }
+    }
+
+    private final ConcurrentMap<Path, Chain> chains = new ConcurrentHashMap<>();
+    private final Charset charset;
+    private final ResourcePropertiesService service;
+
+    /**
+     * @param service the {@link ResourcePropertiesService} whose {@link ResourcePropertiesService#getCache()},
+     *        {@link ResourcePropertiesService#getLoader()}, {@link ResourcePropertiesService#getConfigFileName()} and
+     *        {@link ResourcePropertiesService#getRootDirectories()} should be used
+     * @param charset the encoding of the {@code .editorconfig} files
+     */
+    DirectoryPropertiesCache(ResourcePropertiesService service, Charset charset) {
+        super();
+        this.service = service;
+        this.charset = charset;
+    }
+
+    /**
+     * @param absFile the absolute path of the file to query
+     * @return the {@code .editorconfig} properties applicable to the given {@code absFile}
+     * @throws IOException on I/O problems
+     */
+    public ResourceProperties queryProperties(Path absFile) throws IOException {
+        final ResourceProperties.Builder result = ResourceProperties.builder();
+        final String fileName = absFile.getFileName().toString();
+        for (Scope scope : getChain(absFile.getParent()).scopes) {
+            final String relPath = scope.relativize(fileName);
+            for (Section section : scope.sections) {
+                if (section.match(Ec4jPaths.of(relPath))) {
+                    for (Property prop : section.getProperties().values()) {
+                        if (prop.isUnset()) {
+                            result.removeProperty(prop);
+                        } else {
+                            result.property(prop);
+                        }
+                    }
+                }
+            }
+        }
+        return result.build();
+    }
+
+    private Chain getChain(Path dir) throws IOException {
+        if (dir == null) {
+            return Chain.EMPTY;
+        }
+        Chain result = chains.get(dir);
+        if (result == null) {
+            final Path configFile = dir.resolve(service.getConfigFileName());
+            final EditorConfig own = Files.exists(configFile)
+                    ? service.getCache().get(new FileResource(configFile, charset), service.getLoader())
+                    : null;
+            final boolean stop = service.getRootDirectories().contains(new FileResource.Dir(dir, charset));
+            final Chain parent = stop ? new Chain(dir.getParent(), Collections.<Scope>emptyList())
+                    : getChain(dir.getParent());
+            result = parent.child(dir, own);
+            /* two threads may compute the same chain concurrently, but the results are equal */
+            chains.put(dir, result);
+        }
+        return result;
+    }
+
+}
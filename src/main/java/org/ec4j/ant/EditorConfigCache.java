@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ec4j.core.Cache;
+import org.ec4j.core.EditorConfigLoader;
+import org.ec4j.core.Resource;
+import org.ec4j.core.model.EditorConfig;
+
+/**
+ * A thread safe variant of {@link org.ec4j.core.Cache.Caches.PermanentCache}. Note that {@link EditorConfigLoader} is
+ * not thread safe so the loading itself is serialized.
+ * <p>
+ * The last modification time of every {@link FileResource} is recorded when it is loaded so that the entries of files
+ * changed in the meantime can be evicted via {@link #revalidate()}. This allows for sharing a single instance across
+ * several task executions.
+ */
+class EditorConfigCache implements Cache {
+
+    /**
+     * A parsed {@code .editorconfig} file together with its last modification time at the time of parsing.
+     */
+    private static class Entry {
+        private final EditorConfig editorConfig;
+        private final long lastModified;
+
+        Entry(EditorConfig editorConfig, long lastModified) {
+            super();
+            this.editorConfig = editorConfig;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /** The value of {@link Entry#lastModified} for {@link Resource}s that do not represent a file */
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static long lastModified(Resource resource) throws IOException {
+        if (resource instanceof FileResource) {
+            final Path file = ((FileResource) resource).getFile();
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : UNKNOWN;
+        }
+        return UNKNOWN;
+    }
+
+    private final ConcurrentMap<Resource, Entry> entries = new ConcurrentHashMap<>();
+
+    /** {@inheritDoc} */
+    @Override
+    public EditorConfig get(Resource editorConfigFile, EditorConfigLoader loader) throws IOException {
+        final Entry result = entries.get(editorConfigFile);
+        if (result != null) {
+            return result.editorConfig;
+        }
+        synchronized (this) {
+            Entry loaded = entries.get(editorConfigFile);
+            if (loaded == null) {
+                /* get the time first so that a concurrent modification gets noticed by the next revalidate() */
+                final long lastModified = lastModified(editorConfigFile);
+                loaded = new Entry(loader.load(editorConfigFile), lastModified);
+                entries.put(editorConfigFile, loaded);
+            }
+            return loaded.editorConfig;
+        }
+    }
+
+    /**
+     * Evicts the entries of {@link FileResource}s whose last modification time changed since they were loaded or which
+     * do not exist anymore.
+     *
+     * @return the number of evicted entries
+     * @throws IOException on I/O problems
+     */
+    public int revalidate() throws IOException {
+        int result = 0;
+        for (Iterator<Map.Entry<Resource, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Resource, Entry> en = it.next();
+            final long lastModified = en.getValue().lastModified;
+            if (lastModified != UNKNOWN && lastModified != lastModified(en.getKey())) {
+                it.remove();
+                result++;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.ec4j.maven.lint.api.FormatException;
+
+/**
+ * Reads whole text files into {@link String}s with as little copying as possible: files smaller than
+ * {@link #STREAM_THRESHOLD} bytes are read into a heap buffer reused by the current thread and then decoded in a
+ * single pass into a {@link CharBuffer} that is reused as well. Bigger files are read and decoded in chunks of
+ * {@link #STREAM_CHUNK} bytes, so that only their chars are held in memory as a whole. Files are never memory mapped:
+ * a mapping lives until it is garbage collected, and on Windows it prevents the formatted file from replacing the
+ * original one until then.
+ * <p>
+ * UTF-8 and US-ASCII files read into a heap buffer take a fast path that validates and decodes the bytes in the same
+ * pass without going through a {@link CharsetDecoder}: pure ASCII content is turned into a {@link String} right from
+ * the byte array and other content is decoded into the reused char array. A UTF-8 byte order mark is decoded to
+ * {@code U+FEFF} like by the {@link CharsetDecoder}, so that it is written back unchanged when formatting.
+ */
+class FileContents {
+
+    /**
+     * The buffers and the decoder reused by a single thread.
+     */
+    private static class Buffers {
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+        private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+        private CharsetDecoder decoder;
+
+        CharsetDecoder decoder(Charset charset) {
+            if (decoder == null || !decoder.charset().equals(charset)) {
+                /* the default action for malformed input of a new decoder is REPORT */
+                decoder = charset.newDecoder();
+            }
+            return decoder.reset();
+        }
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private static final int INITIAL_CAPACITY = 8192;
+
+    /** The maximum length of an array supported by all JVMs */
+    private static final int MAX_CHARS = Integer.MAX_VALUE - 8;
+
+    /** The number of bytes read at once from files of at least {@link #STREAM_THRESHOLD} bytes */
+    static final int STREAM_CHUNK = 64 * 1024;
+
+    /** Files of this size and bigger are read and decoded in chunks */
+    static final int STREAM_THRESHOLD = 256 * 1024;
+
+    private static String decode(Path file, ByteBuffer in, Charset charset, Buffers buffers) {
+        if (in.hasArray()) {
+            final boolean ascii = StandardCharsets.US_ASCII.equals(charset);
+            if (ascii || StandardCharsets.UTF_8.equals(charset)) {
+                final String result = decodeUtf8(in.array(), in.arrayOffset() + in.position(), in.remaining(),
+                        ascii, buffers);
+                if (result == null) {
+                    throw malformed(file, new MalformedInputException(1));
+                }
+                return result;
+            }
+        }
+        final CharsetDecoder decoder = buffers.decoder(charset);
+        final int maxChars = (int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+        final CharBuffer out;
+        if (maxChars <= STREAM_THRESHOLD) {
+            if (buffers.chars.capacity() < maxChars) {
+                buffers.chars = CharBuffer.allocate(Math.max(maxChars, buffers.chars.capacity() * 2));
+            }
+            out = buffers.chars;
+            out.clear();
+        } else {
+            /* do not keep huge buffers around */
+            out = CharBuffer.allocate(maxChars);
+        }
+        try {
+            CoderResult result = decoder.decode(in, out, true);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            result = decoder.flush(out);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            throw malformed(file, e);
+        }
+        out.flip();
+        return out.toString();
+    }
+
+    /**
+     * Reads and decodes the given {@code channel} in chunks of {@link #STREAM_CHUNK} bytes.
+     *
+     * @param file the file being read, for the error messages
+     * @param channel the channel to read
+     * @param size the expected size of the file in bytes
+     * @param charset the encoding of the file
+     * @param buffers the buffers of the current thread
+     * @return the content of the {@code file}
+     * @throws IOException on I/O problems or if the file is too big to fit into a {@link String}
+     */
+    private static String decodeChunks(Path file, FileChannel channel, long size, Charset charset, Buffers buffers)
+            throws IOException {
+        final CharsetDecoder decoder = buffers.decoder(charset);
+        final double expectedChars = size * (double) decoder.averageCharsPerByte();
+        if (expectedChars >= MAX_CHARS) {
+            throw new IOException(String.format("%s is too big to be processed: %d bytes", file, size));
+        }
+        CharBuffer out = CharBuffer.allocate((int) expectedChars + 16);
+        if (buffers.bytes.capacity() < STREAM_CHUNK) {
+            buffers.bytes = ByteBuffer.allocate(STREAM_CHUNK);
+        }
+        final ByteBuffer in = buffers.bytes;
+        in.clear();
+        try {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(in) < 0;
+                in.flip();
+                CoderResult result = decoder.decode(in, out, endOfInput);
+                while (result.isOverflow()) {
+                    out = grow(file, out);
+                    result = decoder.decode(in, out, endOfInput);
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+                /* keeps an incomplete multi byte sequence for the next round */
+                in.compact();
+            }
+            CoderResult result = decoder.flush(out);
+            while (result.isOverflow()) {
+                out = grow(file, out);
+                result = decoder.flush(out);
+            }
+        } catch (CharacterCodingException e) {
+            throw malformed(file, e);
+        }
+        out.flip();
+        return out.toString();
+    }
+
+    private static CharBuffer grow(Path file, CharBuffer out) throws IOException {
+        if (out.capacity() >= MAX_CHARS) {
+            throw new IOException(String.format("%s is too big to be processed", file));
+        }
+        final CharBuffer result = CharBuffer.allocate((int) Math.min(MAX_CHARS, out.capacity() * 2L));
+        out.flip();
+        result.put(out);
+        return result;
+    }
+
+    /**
+     * Validates and decodes UTF-8 or US-ASCII in a single pass. Rejects the same input as a {@link CharsetDecoder}
+     * reporting malformed input does: overlong forms, surrogates, code points above {@code U+10FFFF} and truncated
+     * sequences.
+     *
+     * @param bytes the array to decode
+     * @param offset the index of the first byte to decode
+     * @param length the number of bytes to decode
+     * @param asciiOnly if {@code true} only bytes below {@code 0x80} are valid
+     * @param buffers the buffers of the current thread
+     * @return the decoded {@link String} or {@code null} if the bytes are malformed
+     */
+    private static String decodeUtf8(byte[] bytes, int offset, int length, boolean asciiOnly, Buffers buffers) {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end && bytes[i] >= 0) {
+            i++;
+        }
+        if (i == end) {
+            /* no need to widen to chars; compact strings store ASCII as bytes anyway */
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        } else if (asciiOnly) {
+            return null;
+        }
+        /* a byte never decodes to more than one char */
+        final char[] chars;
+        if (length <= STREAM_THRESHOLD) {
+            if (buffers.chars.capacity() < length) {
+                buffers.chars = CharBuffer.allocate(Math.max(length, buffers.chars.capacity() * 2));
+            }
+            chars = buffers.chars.array();
+        } else {
+            chars = new char[length];
+        }
+        int n = 0;
+        for (int j = offset; j < i; j++) {
+            chars[n++] = (char) bytes[j];
+        }
+        while (i < end) {
+            final int b = bytes[i];
+            if (b >= 0) {
+                chars[n++] = (char) b;
+                i++;
+                continue;
+            }
+            final int lead = b & 0xFF;
+            if (lead < 0xC2) {
+                /* a continuation byte or an overlong two byte form */
+                return null;
+            } else if (lead < 0xE0) {
+                if (i + 1 >= end || !isContinuation(bytes[i + 1], 0x80, 0xBF)) {
+                    return null;
+                }
+                chars[n++] = (char) (((lead & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+                i += 2;
+            } else if (lead < 0xF0) {
+                /* no overlong forms after E0 and no surrogates after ED */
+                final int min = lead == 0xE0 ? 0xA0 : 0x80;
+                final int max = lead == 0xED ? 0x9F : 0xBF;
+                if (i + 2 >= end || !isContinuation(bytes[i + 1], min, max)
+                        || !isContinuation(bytes[i + 2], 0x80, 0xBF)) {
+                    return null;
+                }
+                chars[n++] = (char) (((lead & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+                i += 3;
+            } else if (lead < 0xF5) {
+                /* no overlong forms after F0 and nothing above U+10FFFF after F4 */
+                final int min = lead == 0xF0 ? 0x90 : 0x80;
+                final int max = lead == 0xF4 ? 0x8F : 0xBF;
+                if (i + 3 >= end || !isContinuation(bytes[i + 1], min, max)
+                        || !isContinuation(bytes[i + 2], 0x80, 0xBF) || !isContinuation(bytes[i + 3], 0x80, 0xBF)) {
+                    return null;
+                }
+                final int codePoint = ((lead & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12)
+                        | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+                chars[n++] = Character.highSurrogate(codePoint);
+                chars[n++] = Character.lowSurrogate(codePoint);
+                i += 4;
+            } else {
+                return null;
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static boolean isContinuation(byte b, int min, int max) {
+        final int value = b & 0xFF;
+        return value >= min && value <= max;
+    }
+
+    private static FormatException malformed(Path file, CharacterCodingException e) {
+        return new FormatException("Could not read " + file
+                + ". This may mean that it is a binary file and you should exclude it from editorconfig processing.",
+                e);
+    }
+
+    /**
+     * Reads the given {@code file} into a {@link String}.
+     *
+     * @param file the file to read
+     * @param charset the encoding of the file
+     * @return the content of the {@code file}
+     * @throws IOException on I/O problems
+     * @throws FormatException if the bytes of the {@code file} cannot be decoded using the given {@code charset}
+     */
+    static String read(Path file, Charset charset) throws IOException {
+        final Buffers buffers = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size >= STREAM_THRESHOLD) {
+                return decodeChunks(file, channel, size, charset, buffers);
+            }
+            ByteBuffer bytes = buffers.bytes;
+            if (bytes.capacity() <= size) {
+                /* one spare byte so that hitting the end of the file does not look like a full buffer */
+                bytes = ByteBuffer.allocate((int) size + 1);
+                buffers.bytes = bytes;
+            }
+            bytes.clear();
+            while (channel.read(bytes) >= 0) {
+                if (!bytes.hasRemaining()) {
+                    /* the file is either bigger than the buffer or it is growing */
+                    final ByteBuffer newBytes = ByteBuffer.allocate(bytes.capacity() * 2);
+                    bytes.flip();
+                    newBytes.put(bytes);
+                    bytes = newBytes;
+                    if (bytes.capacity() <= STREAM_THRESHOLD) {
+                        buffers.bytes = bytes;
+                    }
+                }
+            }
+            bytes.flip();
+            return decode(file, bytes, charset, buffers);
+        }
+    }
+
+    private FileContents() {
+    }
+
+}
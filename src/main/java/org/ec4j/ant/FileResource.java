@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.ec4j.core.Resource;
+import org.ec4j.core.Resource.Resources.StringRandomReader;
+import org.ec4j.core.ResourcePath;
+import org.ec4j.core.model.Ec4jPath;
+import org.ec4j.core.model.Ec4jPath.Ec4jPaths;
+
+/**
+ * A {@link Resource} backed by a {@link Path}. This is equivalent to what
+ * {@link Resource.Resources#ofPath(Path, Charset)} returns, except that the underlying {@link Path} is accessible via
+ * {@link #getFile()} so that {@link EditorConfigCache} can check the state of the file on the file system.
+ */
+class FileResource implements Resource {
+
+    /**
+     * A {@link ResourcePath} backed by a {@link Path}.
+     */
+    static class Dir implements ResourcePath {
+        private final Charset encoding;
+        private final Path path;
+
+        Dir(Path path, Charset encoding) {
+            super();
+            this.path = path;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            return path.equals(((Dir) obj).path);
+        }
+
+        /**
+         * @return the underlying directory
+         */
+        public Path getDir() {
+            return path;
+        }
+
+        @Override
+        public ResourcePath getParent() {
+            final Path parent = path.getParent();
+            return parent == null ? null : new Dir(parent, encoding);
+        }
+
+        @Override
+        public Ec4jPath getPath() {
+            return Ec4jPaths.of(path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+
+        @Override
+        public boolean hasParent() {
+            return path.getParent() != null;
+        }
+
+        @Override
+        public Resource relativize(Resource resource) {
+            if (resource instanceof FileResource) {
+                final FileResource fileResource = (FileResource) resource;
+                return new FileResource(path.relativize(fileResource.path), fileResource.encoding);
+            }
+            throw new IllegalArgumentException(getClass().getName()
+                    + ".relativize(Resource) can handle only instances of " + FileResource.class.getName());
+        }
+
+        @Override
+        public Resource resolve(String name) {
+            return new FileResource(path.resolve(name), encoding);
+        }
+
+        @Override
+        public String toString() {
+            return "path:" + getPath();
+        }
+    }
+
+    private final Charset encoding;
+    private final Path path;
+
+    FileResource(Path path, Charset encoding) {
+        super();
+        this.path = path;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return path.equals(((FileResource) obj).path);
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * @return the underlying file
+     */
+    public Path getFile() {
+        return path;
+    }
+
+    @Override
+    public ResourcePath getParent() {
+        final Path parent = path.getParent();
+        return parent == null ? null : new Dir(parent, encoding);
+    }
+
+    @Override
+    public Ec4jPath getPath() {
+        return Ec4jPaths.of(path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public RandomReader openRandomReader() throws IOException {
+        return StringRandomReader.ofString(new String(Files.readAllBytes(path), encoding));
+    }
+
+    @Override
+    public Reader openReader() throws IOException {
+        return Files.newBufferedReader(path, encoding);
+    }
+
+    @Override
+    public String toString() {
+        return "path:" + getPath();
+    }
+
+}
@@ -0,0 +1,461 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.Resource;
+import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileProvider;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.ec4j.maven.lint.api.Constants;
+
+/**
+ * Lists the files selected by a {@link FileSet} lazily while walking the directory tree so that the first files can
+ * be processed before the whole tree is scanned. Directories whose content cannot be selected are not entered at all.
+ * The entries of each directory are returned in the order of their names.
+ * <p>
+ * The include and exclude patterns have the same meaning as in {@link DirectoryScanner}. {@link FileSet}s having
+ * nested selectors are not supported by this class; {@link #scan(List, Project, boolean)} passes them to a
+ * {@link DirectoryScanner} instead. {@link #scan(List, Project, boolean)} also accepts other kinds of
+ * {@link ResourceCollection}s.
+ */
+class FileSetScanner implements Iterator<Path> {
+
+    /**
+     * A directory being walked.
+     */
+    private static class Frame {
+        private final Iterator<Path> children;
+        private final Object fileKey;
+        /** The path relative to {@link FileSetScanner#dir} using {@link File#separatorChar} or an empty string */
+        private final String relPath;
+
+        Frame(String relPath, Iterator<Path> children, Object fileKey) {
+            super();
+            this.relPath = relPath;
+            this.children = children;
+            this.fileKey = fileKey;
+        }
+    }
+
+    private static final String DEEP_TREE_MATCH = "**";
+    private static final String[] INCLUDE_ALL = new String[] { DEEP_TREE_MATCH };
+    private static final Comparator<Path> NAME_COMPARATOR = new Comparator<Path>() {
+        @Override
+        public int compare(Path p1, Path p2) {
+            return p1.getFileName().toString().compareTo(p2.getFileName().toString());
+        }
+    };
+
+    /**
+     * @param fileSet the {@link FileSet} to scan
+     * @param project the current Ant {@link Project}
+     * @param excludeNonSourceFiles if {@code true} {@link Constants#DEFAULT_EXCLUDES} will be excluded in addition to
+     *        the excludes of the {@code fileSet}
+     * @return a new {@link FileSetScanner} or an empty {@link Iterator} if the directory of the {@code fileSet} does
+     *         not exist and its {@code erroronmissingdir} is {@code false}
+     */
+    static Iterator<Path> of(FileSet fileSet, Project project, boolean excludeNonSourceFiles) {
+        final File dir = fileSet.getDir(project);
+        if (dir == null) {
+            throw new BuildException("No directory specified for a fileset");
+        }
+        if (!dir.exists()) {
+            /*
+             * FileSet has no getter for erroronmissingdir in the Ant versions we support, but its DirectoryScanner
+             * fails if erroronmissingdir is true and finds nothing otherwise
+             */
+            fileSet.getDirectoryScanner(project);
+            return Collections.<Path>emptyIterator();
+        }
+        if (!dir.isDirectory()) {
+            throw new BuildException(dir + (dir.exists() ? " is not a directory." : " does not exist."));
+        }
+        final Set<String> excludes = new LinkedHashSet<>();
+        final String[] fileSetExcludes = fileSet.mergeExcludes(project);
+        if (fileSetExcludes != null) {
+            excludes.addAll(Arrays.asList(fileSetExcludes));
+        }
+        if (fileSet.getDefaultexcludes()) {
+            excludes.addAll(Arrays.asList(DirectoryScanner.getDefaultExcludes()));
+        }
+        if (excludeNonSourceFiles) {
+            excludes.addAll(Constants.DEFAULT_EXCLUDES);
+        }
+        final String[] includes = fileSet.mergeIncludes(project);
+        return new FileSetScanner(dir.toPath(), includes == null || includes.length == 0 ? INCLUDE_ALL : includes,
+                excludes.toArray(new String[0]), fileSet.isCaseSensitive(), fileSet.isFollowSymlinks(), project);
+    }
+
+    /**
+     * @param resources the {@link ResourceCollection}s to scan one after another. {@link FileSet}s are scanned by
+     *        {@link FileSetScanner}s, the other {@link ResourceCollection}s are iterated over lazily via
+     *        {@link ResourceCollection#iterator()} so that their resources are not computed twice. Only file system
+     *        resources are supported; directories and non-existent resources are skipped.
+     * @param project the current Ant {@link Project}
+     * @param excludeNonSourceFiles if {@code true} {@link Constants#DEFAULT_EXCLUDES} will be excluded in addition to
+     *        the excludes of the individual {@link FileSet}s. For other {@link ResourceCollection}s, the patterns are
+     *        matched against the paths relative to {@link Project#getBaseDir()}.
+     * @return an {@link Iterator} over the absolute paths of all files selected by the given {@code resources}
+     */
+    static Iterator<Path> scan(final List<ResourceCollection> resources, final Project project,
+            final boolean excludeNonSourceFiles) {
+        return new Iterator<Path>() {
+            private Iterator<Path> current = Collections.<Path>emptyIterator();
+            private final Iterator<ResourceCollection> remaining = resources.iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && remaining.hasNext()) {
+                    final ResourceCollection rc = remaining.next();
+                    if (!(rc instanceof FileSet)) {
+                        current = scanResources(rc, project, excludeNonSourceFiles);
+                    } else if (((FileSet) rc).hasSelectors()) {
+                        current = scanWithSelectors((FileSet) rc, project, excludeNonSourceFiles);
+                    } else {
+                        current = of((FileSet) rc, project, excludeNonSourceFiles);
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static String normalizePattern(String pattern) {
+        final String result = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        return result.endsWith(File.separator) ? result + DEEP_TREE_MATCH : result;
+    }
+
+    private static String[] normalizePatterns(String[] patterns) {
+        final String[] result = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            result[i] = normalizePattern(patterns[i]);
+        }
+        return result;
+    }
+
+    private static Iterator<Path> scanResources(final ResourceCollection resources, Project project,
+            boolean excludeNonSourceFiles) {
+        if (!resources.isFilesystemOnly()) {
+            throw new BuildException("Only file system resources can be processed, but got " + resources);
+        }
+        final Path basedir = project.getBaseDir().toPath();
+        final String[] excludes = excludeNonSourceFiles
+                ? normalizePatterns(Constants.DEFAULT_EXCLUDES.toArray(new String[0]))
+                : new String[0];
+        final Iterator<?> it = resources.iterator();
+        return new Iterator<Path>() {
+            private Path next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && it.hasNext()) {
+                    final Resource resource = (Resource) it.next();
+                    if (!(resource instanceof FileProvider)) {
+                        throw new BuildException("Only file system resources can be processed, but got " + resource);
+                    }
+                    if (!resource.isExists() || resource.isDirectory()) {
+                        continue;
+                    }
+                    final Path file = ((FileProvider) resource).getFile().toPath().toAbsolutePath();
+                    if (!isExcluded(basedir.relativize(file).toString(), excludes)) {
+                        next = file;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Path result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static boolean isExcluded(String relPath, String[] excludes) {
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude, relPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Iterator<Path> scanWithSelectors(FileSet fileSet, Project project, boolean excludeNonSourceFiles) {
+        if (excludeNonSourceFiles) {
+            fileSet = (FileSet) fileSet.clone();
+            fileSet.appendExcludes(Constants.DEFAULT_EXCLUDES.toArray(new String[0]));
+        }
+        final DirectoryScanner ds = fileSet.getDirectoryScanner(project);
+        final Path dir = fileSet.getDir(project).toPath();
+        final String[] includedFiles = ds.getIncludedFiles();
+        final List<Path> result = new ArrayList<>(includedFiles.length);
+        for (String includedFile : includedFiles) {
+            result.add(dir.resolve(includedFile));
+        }
+        return result.iterator();
+    }
+
+    private final boolean caseSensitive;
+    /** The base directory of the {@link FileSet} */
+    private final Path dir;
+    /**
+     * Those of {@link #excludes} that exclude whole directory trees, i.e. end with {@code /**}
+     */
+    private final String[] dirExcludes;
+    private final String[] excludes;
+    private final boolean followSymlinks;
+    private final String[] includes;
+    private Path next;
+    private final Project project;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    FileSetScanner(Path dir, String[] includes, String[] excludes, boolean caseSensitive, boolean followSymlinks,
+            Project project) {
+        super();
+        this.dir = dir;
+        this.project = project;
+        this.includes = normalizePatterns(includes);
+        this.excludes = normalizePatterns(excludes);
+        this.caseSensitive = caseSensitive;
+        this.followSymlinks = followSymlinks;
+        final List<String> dirExcludes = new ArrayList<>();
+        for (String exclude : this.excludes) {
+            if (exclude.endsWith(File.separator + DEEP_TREE_MATCH)) {
+                dirExcludes.add(exclude);
+            }
+        }
+        this.dirExcludes = dirExcludes.toArray(new String[0]);
+        final List<Path> children;
+        try {
+            children = list(dir);
+        } catch (IOException e) {
+            throw new BuildException("Could not list " + dir, e);
+        }
+        final BasicFileAttributes attrs = readAttributes(dir, true);
+        stack.push(new Frame("", children.iterator(), attrs == null ? null : attrs.fileKey()));
+    }
+
+    /**
+     * @param relPath the path of a directory relative to {@link #dir}
+     * @return {@code true} if the directory may contain some selected files
+     */
+    private boolean couldHoldIncluded(String relPath) {
+        for (String exclude : dirExcludes) {
+            if (SelectorUtils.matchPath(exclude, relPath, caseSensitive)) {
+                return false;
+            }
+        }
+        for (String include : includes) {
+            if (SelectorUtils.matchPatternStart(include, relPath, caseSensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the tree until the next selected file is found.
+     *
+     * @return the next selected file or {@code null} if there are no more files to walk
+     */
+    private Path findNext() {
+        while (!stack.isEmpty()) {
+            final Frame frame = stack.peek();
+            if (!frame.children.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            final Path child = frame.children.next();
+            final String name = child.getFileName().toString();
+            final String relPath = frame.relPath.isEmpty() ? name : frame.relPath + File.separatorChar + name;
+            BasicFileAttributes attrs = readAttributes(child, false);
+            if (attrs == null) {
+                /* vanished in the meantime */
+                continue;
+            }
+            if (attrs.isSymbolicLink()) {
+                if (!followSymlinks) {
+                    continue;
+                }
+                attrs = readAttributes(child, true);
+                if (attrs == null) {
+                    /* a dangling link */
+                    continue;
+                }
+            }
+            if (attrs.isDirectory()) {
+                if (!isLoop(attrs.fileKey()) && couldHoldIncluded(relPath)) {
+                    push(child, relPath, attrs);
+                }
+            } else if (isIncluded(relPath)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = findNext();
+        }
+        return next != null;
+    }
+
+    /**
+     * @param relPath the path of a file relative to {@link #dir}
+     * @return {@code true} if the file is selected
+     */
+    private boolean isIncluded(String relPath) {
+        boolean included = false;
+        for (String include : includes) {
+            if (SelectorUtils.matchPath(include, relPath, caseSensitive)) {
+                included = true;
+                break;
+            }
+        }
+        if (!included) {
+            return false;
+        }
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude, relPath, caseSensitive)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param fileKey the {@link BasicFileAttributes#fileKey()} of a directory
+     * @return {@code true} if the directory is the same as one of the directories being walked
+     */
+    private boolean isLoop(Object fileKey) {
+        if (fileKey != null) {
+            for (Frame frame : stack) {
+                if (fileKey.equals(frame.fileKey)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Path result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @param directory the directory to list
+     * @return the entries of the given {@code directory} sorted by their names
+     * @throws IOException if the {@code directory} cannot be listed
+     */
+    private static List<Path> list(Path directory) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                result.add(entry);
+            }
+        }
+        Collections.sort(result, NAME_COMPARATOR);
+        return result;
+    }
+
+    /**
+     * Starts walking the given subdirectory. Like {@link DirectoryScanner}, skips the subdirectory if it cannot be
+     * listed, e.g. because it is not readable.
+     */
+    private void push(Path directory, String relPath, BasicFileAttributes attrs) {
+        final List<Path> children;
+        try {
+            children = list(directory);
+        } catch (IOException e) {
+            project.log("Skipping directory " + directory + " that cannot be listed: " + e, Project.MSG_VERBOSE);
+            return;
+        }
+        stack.push(new Frame(relPath, children.iterator(), attrs == null ? null : attrs.fileKey()));
+    }
+
+    private BasicFileAttributes readAttributes(Path path, boolean followLinks) {
+        try {
+            return followLinks ? Files.readAttributes(path, BasicFileAttributes.class)
+                    : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.tools.ant.BuildException;
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * Stores formatted files on a dedicated writer thread so that linting the next files does not need to wait for the
+ * disk. The writer thread takes all writes queued so far in one go and stores them one after another. At most
+ * {@code capacity} writes can be queued; {@link #submit(Path, String, Charset)} blocks if the queue is full.
+ * <p>
+ * Every file is first written to a temporary file in the same directory, which is then flushed to the disk, given the
+ * owner, permissions and access control list of the original file and atomically renamed to the original file name.
+ * Hence the original file is never left half written. Backups are created as hard links to the original file where
+ * the file system supports it and as copies otherwise.
+ * <p>
+ * With {@code capacity} lower than {@code 1}, no writer thread is started and each file is written on the calling
+ * thread as soon as it is submitted.
+ */
+class FileWriteQueue implements Closeable {
+
+    /**
+     * A file to store.
+     */
+    private static class Write {
+        private final Charset encoding;
+        private final Path file;
+        private final String text;
+
+        Write(Path file, String text, Charset encoding) {
+            super();
+            this.file = file;
+            this.text = text;
+            this.encoding = encoding;
+        }
+    }
+
+    /** Tells the writer thread to stop */
+    private static final Write END = new Write(null, null, null);
+
+    private static void backup(Path file, Path backupFile) throws IOException {
+        try {
+            Files.createLink(backupFile, file);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | IOException e) {
+            /* hard links not supported by the file system */
+            Files.copy(file, backupFile, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Copies the owner, the group, the POSIX permissions and the access control list of {@code source} to
+     * {@code target}, as far as the file system supports them. Temporary files are readable only by their owner and
+     * they belong to the current user, so without this, storing a file would change who can access it.
+     *
+     * @param source the file to copy the attributes from
+     * @param target the file to copy the attributes to
+     * @throws IOException on I/O problems
+     */
+    private static void copyAttributes(Path source, Path target) throws IOException {
+        final FileOwnerAttributeView owner = Files.getFileAttributeView(source, FileOwnerAttributeView.class);
+        if (owner != null) {
+            final UserPrincipal sourceOwner = owner.getOwner();
+            if (!sourceOwner.equals(Files.getOwner(target))) {
+                try {
+                    Files.setOwner(target, sourceOwner);
+                } catch (FileSystemException e) {
+                    /* only privileged users may give their files away; the file will belong to the current user */
+                }
+            }
+        }
+        final PosixFileAttributeView posix = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if (posix != null) {
+            final PosixFileAttributes attributes = posix.readAttributes();
+            final PosixFileAttributeView targetPosix = Files.getFileAttributeView(target,
+                    PosixFileAttributeView.class);
+            if (!attributes.group().equals(targetPosix.readAttributes().group())) {
+                try {
+                    targetPosix.setGroup(attributes.group());
+                } catch (FileSystemException e) {
+                    /* the current user is not a member of the group; the file will keep the default group */
+                }
+            }
+            /* after changing the ownership which may clear the set-user-ID and set-group-ID bits */
+            targetPosix.setPermissions(attributes.permissions());
+        }
+        final AclFileAttributeView acl = Files.getFileAttributeView(source, AclFileAttributeView.class);
+        if (acl != null) {
+            Files.getFileAttributeView(target, AclFileAttributeView.class).setAcl(acl.getAcl());
+        }
+    }
+
+    /**
+     * Writes the given {@code text} to the given {@code file} through a temporary file that is flushed to the disk,
+     * given the attributes of {@code file} and atomically renamed to {@code file} afterwards.
+     *
+     * @param file the file to write
+     * @param text the new content of the {@code file}
+     * @param encoding the encoding to use
+     * @param backupSuffix if not {@code null}, the original {@code file} will be preserved under its name with this
+     *        suffix appended
+     * @throws IOException on I/O problems or if the {@code text} cannot be encoded using the given {@code encoding}
+     */
+    static void write(Path file, String text, Charset encoding, String backupSuffix) throws IOException {
+        final ByteBuffer bytes = encoding.newEncoder().encode(CharBuffer.wrap(text));
+        /* write through symbolic links rather than replacing them */
+        final Path target = file.toRealPath();
+        final Path tempFile = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                /* otherwise a crash shortly after the rename may leave an empty file behind */
+                channel.force(true);
+            }
+            copyAttributes(target, tempFile);
+            if (backupSuffix != null) {
+                backup(target, Paths.get(file.toString() + backupSuffix));
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private final String backupSuffix;
+    private boolean closed;
+    /** The first failure of the writer thread */
+    private volatile IOException failure;
+    private final Logger log;
+    private final BlockingQueue<Write> queue;
+    private final Thread writer;
+
+    /**
+     * @param capacity the maximal number of queued writes; if lower than {@code 1}, the files are written on the
+     *        calling thread
+     * @param backupSuffix if not {@code null}, a backup of every file will be created just before the file is stored,
+     *        with this suffix appended to the file name
+     * @param log the {@link Logger} to use
+     */
+    FileWriteQueue(int capacity, String backupSuffix, Logger log) {
+        super();
+        this.backupSuffix = backupSuffix;
+        this.log = log;
+        if (capacity < 1) {
+            this.queue = null;
+            this.writer = null;
+        } else {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, "editorconfig-writer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+    }
+
+    /**
+     * Waits until all queued files are stored and stops the writer thread. Calling this method more than once has no
+     * effect.
+     *
+     * @throws IOException if any of the files could not be stored
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (writer != null) {
+                put(END);
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BuildException("Interrupted while waiting for the writer thread", e);
+                }
+            }
+            checkFailure();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * The loop of the writer thread.
+     */
+    private void drain() {
+        final List<Write> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            log.trace("Storing a batch of {} files", batch.size());
+            for (Write write : batch) {
+                if (write == END) {
+                    return;
+                }
+                if (failure == null) {
+                    /* after a failure, we just empty the queue so that the producer does not get blocked */
+                    try {
+                        write(write.file, write.text, write.encoding, backupSuffix);
+                    } catch (IOException | RuntimeException e) {
+                        failure = new IOException("Could not store formatted file " + write.file + ": " + e.getMessage(),
+                                e);
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void put(Write write) {
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Interrupted while waiting for the writer thread", e);
+        }
+    }
+
+    /**
+     * Schedules the given {@code text} to be stored in the given {@code file}.
+     *
+     * @param file the file to write
+     * @param text the new content of the {@code file}
+     * @param encoding the encoding to use
+     * @throws IOException if this or any previously submitted file could not be stored
+     */
+    public void submit(Path file, String text, Charset encoding) throws IOException {
+        if (closed) {
+            throw new IllegalStateException(FileWriteQueue.class.getSimpleName() + " closed already");
+        }
+        checkFailure();
+        if (writer == null) {
+            write(file, text, encoding, backupSuffix);
+        } else {
+            put(new Write(file, text, encoding));
+        }
+    }
+
+}
@@ -16,10 +16,17 @@
  */
 package org.ec4j.ant;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.tools.ant.BuildException;
+import org.ec4j.core.ResourcePropertiesService;
 import org.ec4j.maven.lint.api.EditableResource;
+import org.ec4j.maven.lint.api.FormatException;
 import org.ec4j.maven.lint.api.FormattingHandler;
 import org.ec4j.maven.lint.api.Resource;
 import org.ec4j.maven.lint.api.ViolationHandler;
@@ -32,6 +39,46 @@ import org.ec4j.maven.lint.api.ViolationHandler;
  */
 public class FormatEditorconfigTask extends AbstractEditorconfigTask {
 
+    /**
+     * An {@link EditableResource} that remembers its original content so that it is stored only if the fixes
+     * applied to it actually changed it. Storing is delegated to {@link FormatEditorconfigTask#writeQueue} or to
+     * {@link FormatEditorconfigTask#patchWriter}.
+     */
+    private class FormattedResource extends EditableResource {
+        private final String original;
+
+        FormattedResource(Path absPath, Path relPath, Charset encoding, String text) {
+            super(absPath, relPath, encoding, text);
+            this.original = text;
+        }
+
+        /**
+         * Compares the current content with the original one char by char rather than comparing their hash codes
+         * like {@link EditableResource#changed()} does. Every file for which this returns {@code false} is counted in
+         * {@link FormatEditorconfigTask#skippedWriteCount}, no matter whether it needed no fixes at all or the fixes
+         * cancelled each other out.
+         *
+         * @return {@code true} if the current content differs from the content the resource was loaded with
+         */
+        @Override
+        public boolean changed() {
+            final boolean result = original.length() != length() || !original.contentEquals(this);
+            if (!result) {
+                skippedWriteCount.incrementAndGet();
+            }
+            return result;
+        }
+
+        @Override
+        public void store() throws IOException {
+            if (patchWriter != null) {
+                patchWriter.append(relPath, original, asString(), encoding);
+            } else {
+                writeQueue.submit(absPath, asString(), encoding);
+            }
+        }
+    }
+
     /**
      * If {@code true}, a backup file will be created for every file that needs to be formatted just before the
      * formatted version is stored. If {@code false}, no backup is done and the files are formatted in place. See also
@@ -48,16 +95,132 @@ public class FormatEditorconfigTask extends AbstractEditorconfigTask {
      */
     private String backupSuffix = ".bak";
 
+    /**
+     * If set, the files are not modified at all. Instead, the changes that would be done to them are written to this
+     * file in the unified diff format, with paths relative to the project's basedir. The patch can be applied later
+     * using {@code patch -p1} or {@code git apply}. The diffs are computed only for the files that need to be
+     * formatted. {@link #backup} has no effect in this mode.
+     *
+     * @since 0.0.2
+     */
+    private File patchFile;
+
+    /** The {@link PatchWriter} writing to {@link #patchFile} in the current execution or {@code null} */
+    private PatchWriter patchWriter;
+
+    /** The number of files that were not stored because their formatted content equals the original */
+    private final AtomicInteger skippedWriteCount = new AtomicInteger();
+
+    /** The {@link FileWriteQueue} of the current execution */
+    private FileWriteQueue writeQueue;
+
+    /**
+     * The number of formatted files that can wait for being stored by the writer thread. If the limit is reached,
+     * linting waits for the writer thread to catch up. Values lower than {@code 1} mean that no writer thread is used
+     * and every file is stored as soon as it is formatted. In any case, the formatted content is written to a
+     * temporary file first which then atomically replaces the original file.
+     *
+     * @since 0.0.2
+     */
+    private int writeQueueSize = 64;
+
     /** {@inheritDoc} */
     @Override
     protected ViolationHandler createHandler() {
-        return new FormattingHandler(backup, backupSuffix, log);
+        /* backups are done by writeQueue */
+        return new FormattingHandler(false, backupSuffix, log) {
+            @Override
+            public void endFiles() {
+                try {
+                    writeQueue.close();
+                } catch (IOException e) {
+                    throw new FormatException(e.getMessage(), e);
+                }
+                super.endFiles();
+                if (patchWriter != null) {
+                    try {
+                        patchWriter.close();
+                    } catch (IOException e) {
+                        throw new FormatException("Could not write " + patchFile, e);
+                    }
+                    final int patched = patchWriter.getFileCount();
+                    log.info("Wrote the changes of {} {} to patch file '{}'; no files were modified", patched,
+                            patched == 1 ? "file" : "files", patchFile);
+                }
+                final int skipped = skippedWriteCount.get();
+                log.info("Skipped writing {} {} whose formatted content equals the original", skipped,
+                        skipped == 1 ? "file" : "files");
+            }
+        };
     }
 
     /** {@inheritDoc} */
     @Override
-    protected Resource createResource(Path absFile, Path relFile, Charset encoding) {
-        return new EditableResource(absFile, relFile, encoding);
+    protected Resource createResource(Path absFile, Path relFile, Charset encoding) throws IOException {
+        return new FormattedResource(absFile, relFile, encoding, FileContents.read(absFile, encoding));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute() {
+        if (watch && patchFile != null) {
+            throw new BuildException("patchFile cannot be combined with watch", getLocation());
+        }
+        super.execute();
+    }
+
+    /**
+     * Opens the {@link #writeQueue} and the {@link #patchWriter} for the given batch of files and closes them
+     * afterwards.
+     */
+    @Override
+    void lintFiles(Iterator<Path> scannedFiles, LinterFilter linterFilter, ResourcePropertiesService propertiesService,
+            boolean requirePropertiesMatch) {
+        skippedWriteCount.set(0);
+        writeQueue = new FileWriteQueue(writeQueueSize, backup ? backupSuffix : null, log);
+        try {
+            if (patchFile != null) {
+                try {
+                    patchWriter = new PatchWriter(patchFile.toPath());
+                } catch (IOException e) {
+                    throw new BuildException("Could not open " + patchFile + " for writing", e, getLocation());
+                }
+            }
+            super.lintFiles(scannedFiles, linterFilter, propertiesService, requirePropertiesMatch);
+        } finally {
+            if (patchWriter != null) {
+                try {
+                    /* a no-op unless the execution failed before FormattingHandler.endFiles() */
+                    patchWriter.close();
+                } catch (IOException e) {
+                    log.warn("{}", e.getMessage());
+                }
+                patchWriter = null;
+            }
+            try {
+                /* a no-op unless the execution failed before FormattingHandler.endFiles() */
+                writeQueue.close();
+            } catch (IOException e) {
+                log.warn("{}", e.getMessage());
+            }
+            writeQueue = null;
+        }
+    }
+
+    public void setBackup(boolean backup) {
+        this.backup = backup;
+    }
+
+    public void setBackupSuffix(String backupSuffix) {
+        this.backupSuffix = backupSuffix;
+    }
+
+    public void setPatchFile(File patchFile) {
+        this.patchFile = patchFile;
+    }
+
+    public void setWriteQueueSize(int writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
     }
 
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * Lists the files added or modified according to the local git repository by running a {@code git} executable.
+ */
+class GitChangedFiles {
+
+    /**
+     * Lists the files that were added or modified either since the merge base of {@code changedSince} and
+     * {@code HEAD} or, if {@code onlyStaged} is {@code true}, in the git index. Untracked files that are not ignored
+     * count as added unless {@code onlyStaged} is {@code true}. Deleted files are never listed.
+     *
+     * @param git the {@code git} executable to run
+     * @param workDir a directory within the git working tree
+     * @param changedSince a git revision to compare against or {@code null} to compare against {@code HEAD}
+     * @param onlyStaged if {@code true} only the changes added to the git index are taken into account
+     * @param log the {@link Logger} to use
+     * @return a {@link Set} of absolute real paths
+     * @throws IOException if {@code git} cannot be run or if it exits with a non-zero code
+     */
+    static Set<Path> list(String git, Path workDir, String changedSince, boolean onlyStaged, Logger log)
+            throws IOException {
+        final Path topLevel = Paths.get(run(log, workDir, git, "rev-parse", "--show-toplevel").trim())
+                .toRealPath();
+
+        final List<String> diff = new ArrayList<>(
+                Arrays.asList(git, "diff", "--name-only", "-z", "--no-renames", "--diff-filter=ACMT"));
+        if (onlyStaged) {
+            diff.add("--cached");
+        }
+        if (changedSince != null) {
+            if (changedSince.startsWith("-")) {
+                /* would be taken for an option */
+                throw new IOException(String.format("Invalid git revision '%s'", changedSince));
+            }
+            diff.add(run(log, workDir, git, "merge-base", changedSince, "HEAD").trim());
+        }
+        diff.add("--");
+
+        final Set<Path> result = new HashSet<>();
+        addAll(result, topLevel, run(log, workDir, diff.toArray(new String[0])));
+        if (!onlyStaged) {
+            /* unlike diff, ls-files prints paths relative to workDir unless --full-name is given */
+            addAll(result, topLevel,
+                    run(log, workDir, git, "ls-files", "--others", "--exclude-standard", "--full-name", "-z"));
+        }
+        return result;
+    }
+
+    private static void addAll(Set<Path> result, Path topLevel, String nulSeparatedPaths) {
+        for (String path : nulSeparatedPaths.split("\u0000")) {
+            if (!path.isEmpty()) {
+                result.add(topLevel.resolve(path));
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static String run(Logger log, Path workDir, String... command) throws IOException {
+        final List<String> cmd = Arrays.asList(command);
+        log.debug("Running {} in '{}'", cmd, workDir);
+        /*
+         * stderr goes to a file so that git never blocks on a full stderr pipe, e.g. due to lots of warnings, while we
+         * are reading stdout
+         */
+        final Path errFile = Files.createTempFile("editorconfig-git-", ".err");
+        try {
+            final Process process = new ProcessBuilder(cmd).directory(workDir.toFile())
+                    .redirectError(errFile.toFile()).start();
+            process.getOutputStream().close();
+            final byte[] out;
+            try (InputStream stdout = process.getInputStream()) {
+                out = readFully(stdout);
+            }
+            final int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroy();
+                throw new IOException("Interrupted while waiting for " + cmd, e);
+            }
+            if (exitCode != 0) {
+                throw new IOException(String.format("%s exited with code %d: %s", cmd, exitCode,
+                        new String(Files.readAllBytes(errFile), StandardCharsets.UTF_8).trim()));
+            }
+            return new String(out, StandardCharsets.UTF_8);
+        } finally {
+            Files.deleteIfExists(errFile);
+        }
+    }
+
+    private GitChangedFiles() {
+    }
+
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * A persistent record of files that were found to comply with the {@code .editorconfig} rules in a previous run. A file
+ * does not need to be linted again as long as its size, content and the {@code .editorconfig} files in its ancestor
+ * directories did not change. The last modification time of the file is used to avoid computing the content hash in
+ * the common case.
+ * <p>
+ * The whole cache gets invalidated if the {@code fingerprint} passed to {@link #load(Path, String, Logger)} does not
+ * match the one stored in the cache file. The fingerprint should thus cover all settings that can influence the result
+ * of linting, such as the set of {@link org.ec4j.maven.lint.api.Linter}s and the default encoding.
+ * <p>
+ * {@link #store(Path)} keeps the entries of the files not seen in the current run as long as the files exist, so that
+ * partial runs, such as those restricted to the files changed according to git or to a single shard, do not discard
+ * the entries of the other files.
+ * <p>
+ * {@link #isUpToDate(Path, Path)} and {@link #createEntry(Path)} may be called concurrently from several threads.
+ */
+class LintCache {
+
+    /**
+     * A cache record of a single file.
+     */
+    static class Entry {
+        private final String contentHash;
+        private final String editorConfigFingerprint;
+        private final long lastModified;
+        private final long size;
+
+        Entry(long size, long lastModified, String contentHash, String editorConfigFingerprint) {
+            super();
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.editorConfigFingerprint = editorConfigFingerprint;
+        }
+    }
+
+    private static final String CONFIG_FILE_NAME = ".editorconfig";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String HEADER_PREFIX = "editorconfig-lint-cache 1 ";
+    private static final String NO_CONFIG_FILE = "-";
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * @param bytes the bytes to convert
+     * @return a lower case hexadecimal representation of the given {@code bytes}
+     */
+    static String toHex(byte[] bytes) {
+        final char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            result[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /**
+     * @param input the {@link String} to hash
+     * @return a hexadecimal SHA-1 hash of the UTF-8 bytes of the given {@code input}
+     */
+    static String hash(String input) {
+        return toHex(newDigest().digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Reads the given cache file.
+     *
+     * @param cacheFile the file to read
+     * @param fingerprint the fingerprint of the current settings; if it is not equal to the one stored in
+     *        {@code cacheFile}, the stored entries are ignored
+     * @param log the {@link Logger} to use
+     * @return a new {@link LintCache}
+     * @throws IOException on I/O problems
+     */
+    static LintCache load(Path cacheFile, String fingerprint, Logger log) throws IOException {
+        final Map<String, Entry> entries = new HashMap<>();
+        if (Files.exists(cacheFile)) {
+            try (BufferedReader r = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                final String header = r.readLine();
+                if ((HEADER_PREFIX + fingerprint).equals(header)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        final String[] cols = line.split(String.valueOf(SEPARATOR), 5);
+                        if (cols.length == 5) {
+                            entries.put(cols[4],
+                                    new Entry(Long.parseLong(cols[0]), Long.parseLong(cols[1]), cols[2], cols[3]));
+                        }
+                    }
+                    log.debug("Loaded {} entries from cache file '{}'", entries.size(), cacheFile);
+                } else {
+                    log.info("Ignoring cache file '{}' created with different settings", cacheFile);
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed cache file '{}'", cacheFile);
+                entries.clear();
+            }
+        }
+        return new LintCache(cacheFile, fingerprint, entries);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final Path cacheFile;
+    private final ConcurrentMap<Path, String> dirFingerprints = new ConcurrentHashMap<>();
+    private final String fingerprint;
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final ConcurrentMap<String, Entry> newEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> oldEntries;
+    /** The keys passed to {@link #isUpToDate(Path, Path)}; their old entries are stale unless renewed */
+    private final Set<String> seenKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    LintCache(Path cacheFile, String fingerprint, Map<String, Entry> oldEntries) {
+        super();
+        this.cacheFile = cacheFile;
+        this.fingerprint = fingerprint;
+        this.oldEntries = Collections.unmodifiableMap(oldEntries);
+    }
+
+    /**
+     * Computes a new {@link Entry} for the given file as it is now. This should be called before the file is linted so
+     * that any modifications done while linting invalidate the entry.
+     *
+     * @param absFile the absolute path of the file
+     * @return a new {@link Entry}
+     * @throws IOException on I/O problems
+     */
+    public Entry createEntry(Path absFile) throws IOException {
+        final BasicFileAttributes attrs = Files.readAttributes(absFile, BasicFileAttributes.class);
+        return new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), contentHash(absFile),
+                editorConfigFingerprint(absFile.getParent()));
+    }
+
+    /**
+     * @return the path of the underlying cache file
+     */
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * @return the number of {@link #isUpToDate(Path, Path)} calls that returned {@code true}
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @param relFile the file relative to the basedir, used as a key
+     * @param absFile the absolute path of the file
+     * @return {@code true} if the given file was found to comply with the {@code .editorconfig} rules in a previous
+     *         run and neither the file nor its {@code .editorconfig} files changed since then
+     * @throws IOException on I/O problems
+     */
+    public boolean isUpToDate(Path relFile, Path absFile) throws IOException {
+        final String key = relFile.toString();
+        seenKeys.add(key);
+        final Entry old = oldEntries.get(key);
+        if (old == null) {
+            return false;
+        }
+        final BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(absFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (attrs.size() != old.size
+                || !old.editorConfigFingerprint.equals(editorConfigFingerprint(absFile.getParent()))) {
+            return false;
+        }
+        final long lastModified = attrs.lastModifiedTime().toMillis();
+        if (lastModified == old.lastModified) {
+            newEntries.put(key, old);
+        } else if (old.contentHash.equals(contentHash(absFile))) {
+            /* touched but not changed */
+            newEntries.put(key, new Entry(old.size, lastModified, old.contentHash, old.editorConfigFingerprint));
+        } else {
+            return false;
+        }
+        hitCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that the given file complies with the {@code .editorconfig} rules.
+     *
+     * @param relFile the file relative to the basedir, used as a key
+     * @param entry the {@link Entry} obtained via {@link #createEntry(Path)} before the file was linted
+     */
+    public void put(Path relFile, Entry entry) {
+        newEntries.put(relFile.toString(), entry);
+    }
+
+    /**
+     * Writes the entries of the compliant files seen in the current run to {@link #cacheFile} together with the loaded
+     * entries of the files not seen in the current run. Of the latter, only the entries of the files that do not exist
+     * anymore are dropped.
+     *
+     * @param basedir the directory the keys are relative to
+     * @throws IOException on I/O problems
+     */
+    public void store(Path basedir) throws IOException {
+        final Map<String, Entry> entries = new TreeMap<>(newEntries);
+        for (Map.Entry<String, Entry> old : oldEntries.entrySet()) {
+            final String key = old.getKey();
+            if (!seenKeys.contains(key) && !entries.containsKey(key) && Files.exists(basedir.resolve(key))) {
+                entries.put(key, old.getValue());
+            }
+        }
+        final Path dir = cacheFile.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        final Path tempFile = Files.createTempFile(dir, cacheFile.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter w = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                w.write(HEADER_PREFIX);
+                w.write(fingerprint);
+                w.write('\n');
+                for (Map.Entry<String, Entry> en : entries.entrySet()) {
+                    final Entry entry = en.getValue();
+                    w.write(String.valueOf(entry.size));
+                    w.write(SEPARATOR);
+                    w.write(String.valueOf(entry.lastModified));
+                    w.write(SEPARATOR);
+                    w.write(entry.contentHash);
+                    w.write(SEPARATOR);
+                    w.write(entry.editorConfigFingerprint);
+                    w.write(SEPARATOR);
+                    w.write(en.getKey());
+                    w.write('\n');
+                }
+            }
+            try {
+                Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private String contentHash(Path absFile) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(absFile)) {
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param dir the directory whose {@code .editorconfig} chain should be fingerprinted
+     * @return a hash of the sizes and modification times of all {@code .editorconfig} files in {@code dir} and its
+     *         ancestors
+     * @throws IOException on I/O problems
+     */
+    private String editorConfigFingerprint(Path dir) throws IOException {
+        if (dir == null) {
+            return NO_CONFIG_FILE;
+        }
+        final String cached = dirFingerprints.get(dir);
+        if (cached != null) {
+            return cached;
+        }
+        final Path configFile = dir.resolve(CONFIG_FILE_NAME);
+        final String own;
+        if (Files.exists(configFile)) {
+            final BasicFileAttributes attrs = Files.readAttributes(configFile, BasicFileAttributes.class);
+            own = attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+        } else {
+            own = NO_CONFIG_FILE;
+        }
+        final String result = hash(editorConfigFingerprint(dir.getParent()) + "/" + own);
+        dirFingerprints.put(dir, result);
+        return result;
+    }
+
+}
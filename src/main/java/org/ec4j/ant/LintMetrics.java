@@ -0,0 +1,350 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * Collects the time spent and the number of bytes processed per {@link Linter} class, per file name extension and per
+ * {@link Phase} of a task execution. This class is thread safe.
+ */
+class LintMetrics {
+
+    /**
+     * The number of files, the number of bytes and the time spent on them.
+     */
+    static class Counter {
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        void add(long fileCount, long byteCount, long nanoCount) {
+            files.addAndGet(fileCount);
+            bytes.addAndGet(byteCount);
+            nanos.addAndGet(nanoCount);
+        }
+
+        long getBytes() {
+            return bytes.get();
+        }
+
+        long getFiles() {
+            return files.get();
+        }
+
+        long getNanos() {
+            return nanos.get();
+        }
+    }
+
+    /**
+     * The time spent on a single file.
+     */
+    static class FileTime {
+        private final long bytes;
+        private final Path file;
+        private final long nanos;
+
+        FileTime(Path file, long bytes, long nanos) {
+            super();
+            this.file = file;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * The phases of a task execution. {@link #SCAN} and {@link #REPORT} happen on the thread executing the task;
+     * {@link #PROPERTIES} and {@link #LINT} are summed up over all worker threads.
+     */
+    enum Phase {
+        /** Linting the files */
+        LINT,
+        /** Querying the {@code .editorconfig} properties */
+        PROPERTIES,
+        /** Passing the violations to the handler, including the re-linting and storing of formatted files */
+        REPORT,
+        /** Walking the file sets */
+        SCAN;
+
+        String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Comparator<FileTime> FASTEST_FIRST = new Comparator<FileTime>() {
+        @Override
+        public int compare(FileTime t1, FileTime t2) {
+            return Long.compare(t1.nanos, t2.nanos);
+        }
+    };
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    static String escapeJson(String value) {
+        final StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+            case '\\':
+                result.append('\\').append(c);
+                break;
+            default:
+                if (c < 0x20) {
+                    result.append(String.format("\\u%04x", (int) c));
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private final ConcurrentMap<String, Counter> extensions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> linters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Phase, Counter> phases = new ConcurrentHashMap<>();
+    private final int slowestCount;
+    /** A min-heap holding the {@link #slowestCount} slowest files seen so far */
+    private final PriorityQueue<FileTime> slowestFiles;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param slowestCount the number of the slowest files to keep track of
+     */
+    LintMetrics(int slowestCount) {
+        super();
+        this.slowestCount = slowestCount;
+        this.slowestFiles = new PriorityQueue<>(Math.max(1, slowestCount), FASTEST_FIRST);
+    }
+
+    /**
+     * Records the total time spent on the given {@code file} in {@link Phase#PROPERTIES} and {@link Phase#LINT}.
+     *
+     * @param file the file relative to the basedir
+     * @param bytes the size of the {@code file}
+     * @param nanos the time spent
+     */
+    void addFile(Path file, long bytes, long nanos) {
+        counter(extensions, LinterFilter.extension(file)).add(1, bytes, nanos);
+        if (slowestCount > 0) {
+            synchronized (slowestFiles) {
+                if (slowestFiles.size() < slowestCount) {
+                    slowestFiles.add(new FileTime(file, bytes, nanos));
+                } else if (slowestFiles.peek().nanos < nanos) {
+                    slowestFiles.poll();
+                    slowestFiles.add(new FileTime(file, bytes, nanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param linter the {@link Linter} that processed a file
+     * @param bytes the size of the file
+     * @param nanos the time spent
+     */
+    void addLinter(Linter linter, long bytes, long nanos) {
+        counter(linters, linter.getClass().getName()).add(1, bytes, nanos);
+    }
+
+    /**
+     * @param phase the {@link Phase} a single file went through
+     * @param bytes the size of the file or {@code 0} if not known
+     * @param nanos the time spent
+     */
+    void addPhase(Phase phase, long bytes, long nanos) {
+        counter(phases, phase).add(1, bytes, nanos);
+    }
+
+    /**
+     * @param files the files to be scanned
+     * @return an {@link Iterator} delegating to the given {@code files} that adds the time spent in it and the number
+     *         of files it returned to {@link Phase#SCAN}
+     */
+    Iterator<Path> timeScan(final Iterator<Path> files) {
+        final Counter scan = counter(phases, Phase.SCAN);
+        return new Iterator<Path>() {
+            @Override
+            public boolean hasNext() {
+                final long start = System.nanoTime();
+                final boolean result = files.hasNext();
+                scan.add(0, 0, System.nanoTime() - start);
+                return result;
+            }
+
+            @Override
+            public Path next() {
+                final long start = System.nanoTime();
+                final Path result = files.next();
+                scan.add(1, 0, System.nanoTime() - start);
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private <K> Counter counter(ConcurrentMap<K, Counter> counters, K key) {
+        Counter result = counters.get(key);
+        if (result == null) {
+            final Counter newCounter = new Counter();
+            result = counters.putIfAbsent(key, newCounter);
+            if (result == null) {
+                result = newCounter;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the slowest files, the slowest first
+     */
+    List<FileTime> getSlowestFiles() {
+        final List<FileTime> result;
+        synchronized (slowestFiles) {
+            result = new ArrayList<>(slowestFiles);
+        }
+        Collections.sort(result, Collections.reverseOrder(FASTEST_FIRST));
+        return result;
+    }
+
+    /**
+     * Logs the {@link #getSlowestFiles()} on INFO level.
+     *
+     * @param log the {@link Logger} to use
+     */
+    void logSlowestFiles(Logger log) {
+        final List<FileTime> slowest = getSlowestFiles();
+        if (!slowest.isEmpty()) {
+            log.info("The {} slowest files:", slowest.size());
+            for (FileTime fileTime : slowest) {
+                log.info("    {} ms {} ({} bytes)", fileTime.nanos / 1000000, fileTime.file, fileTime.bytes);
+            }
+        }
+    }
+
+    private Map<String, Counter> phasesByName() {
+        final Map<String, Counter> result = new TreeMap<>();
+        for (Phase phase : Phase.values()) {
+            result.put(phase.getName(), counter(phases, phase));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the metrics to the given {@code file} in CSV format if the file name ends with {@code .csv} or in JSON
+     * format otherwise.
+     *
+     * @param file the file to write
+     * @throws IOException on I/O problems
+     */
+    void write(Path file) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().endsWith(".csv")) {
+                writeCsv(out);
+            } else {
+                writeJson(out);
+            }
+        }
+    }
+
+    private void writeCsv(Writer out) throws IOException {
+        out.write("category,name,files,bytes,timeNanos\n");
+        out.write("total,," + counter(phases, Phase.SCAN).getFiles() + ",,"
+                + (System.nanoTime() - startNanos) + "\n");
+        writeCsv(out, "phase", phasesByName());
+        writeCsv(out, "linter", new TreeMap<>(linters));
+        writeCsv(out, "extension", new TreeMap<>(extensions));
+        for (FileTime fileTime : getSlowestFiles()) {
+            out.write("file," + escapeCsv(fileTime.file.toString()) + ",1," + fileTime.bytes + "," + fileTime.nanos
+                    + "\n");
+        }
+    }
+
+    private void writeCsv(Writer out, String category, Map<String, Counter> counters) throws IOException {
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            final Counter counter = entry.getValue();
+            out.write(category + "," + escapeCsv(entry.getKey()) + "," + counter.getFiles() + "," + counter.getBytes()
+                    + "," + counter.getNanos() + "\n");
+        }
+    }
+
+    private void writeJson(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"files\": " + counter(phases, Phase.SCAN).getFiles() + ",\n");
+        out.write("  \"timeNanos\": " + (System.nanoTime() - startNanos) + ",\n");
+        writeJson(out, "phases", phasesByName());
+        out.write(",\n");
+        writeJson(out, "linters", new TreeMap<>(linters));
+        out.write(",\n");
+        writeJson(out, "extensions", new TreeMap<>(extensions));
+        out.write(",\n");
+        out.write("  \"slowestFiles\": [");
+        String separator = "\n";
+        for (FileTime fileTime : getSlowestFiles()) {
+            out.write(separator + "    { \"name\": " + escapeJson(fileTime.file.toString()) + ", \"bytes\": "
+                    + fileTime.bytes + ", \"timeNanos\": " + fileTime.nanos + " }");
+            separator = ",\n";
+        }
+        out.write("\n  ]\n}\n");
+    }
+
+    private void writeJson(Writer out, String key, Map<String, Counter> counters) throws IOException {
+        out.write("  \"" + key + "\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            final Counter counter = entry.getValue();
+            out.write(separator + "    { \"name\": " + escapeJson(entry.getKey()) + ", \"files\": " + counter.getFiles()
+                    + ", \"bytes\": " + counter.getBytes() + ", \"timeNanos\": " + counter.getNanos() + " }");
+            separator = ",\n";
+        }
+        out.write("\n  ]");
+    }
+
+}
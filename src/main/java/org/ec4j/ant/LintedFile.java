@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.ec4j.core.ResourceProperties;
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+
+/**
+ * The outcome of running all applicable {@link Linter}s over a single file once.
+ */
+class LintedFile {
+
+    /**
+     * @param file the file relative to the basedir
+     * @return a new {@link LintedFile} for a file that was not linted because {@link BinaryFileDetector} considers it
+     *         binary
+     */
+    static LintedFile binary(Path file) {
+        return new LintedFile(file, null, null, Collections.<Linter>emptyList(), Collections.<Violation>emptyList(),
+                null, false, true);
+    }
+
+    /**
+     * @param file the file relative to the basedir
+     * @return a new {@link LintedFile} for a file to which no {@code .editorconfig} properties apply
+     */
+    static LintedFile unmatched(Path file) {
+        return new LintedFile(file, null, null, Collections.<Linter>emptyList(), Collections.<Violation>emptyList(),
+                null, false);
+    }
+
+    /**
+     * @param file the file relative to the basedir
+     * @return a new {@link LintedFile} for a file that was not linted because {@link LintCache} knows it complies
+     */
+    static LintedFile upToDate(Path file) {
+        return new LintedFile(file, null, null, Collections.<Linter>emptyList(), Collections.<Violation>emptyList(),
+                null, true);
+    }
+
+    private final boolean binary;
+    private final LintCache.Entry cacheEntry;
+    private final Path file;
+    private final List<Linter> linters;
+    private final ResourceProperties properties;
+    private final Resource resource;
+    private final boolean upToDate;
+    private final List<Violation> violations;
+
+    LintedFile(Path file, ResourceProperties properties, Resource resource, List<Linter> linters,
+            List<Violation> violations, LintCache.Entry cacheEntry, boolean upToDate) {
+        this(file, properties, resource, linters, violations, cacheEntry, upToDate, false);
+    }
+
+    private LintedFile(Path file, ResourceProperties properties, Resource resource, List<Linter> linters,
+            List<Violation> violations, LintCache.Entry cacheEntry, boolean upToDate, boolean binary) {
+        super();
+        this.binary = binary;
+        this.file = file;
+        this.properties = properties;
+        this.resource = resource;
+        this.linters = linters;
+        this.violations = violations;
+        this.cacheEntry = cacheEntry;
+        this.upToDate = upToDate;
+    }
+
+    /**
+     * @return the {@link LintCache.Entry} describing {@link #getFile()} as it was before linting or {@code null} if no
+     *         {@link LintCache} is in use
+     */
+    public LintCache.Entry getCacheEntry() {
+        return cacheEntry;
+    }
+
+    /**
+     * @return the file relative to the basedir
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the {@link Linter}s applicable to {@link #getFile()}
+     */
+    public List<Linter> getLinters() {
+        return linters;
+    }
+
+    /**
+     * @return the {@code .editorconfig} properties applicable to {@link #getFile()} or {@code null} if there are none
+     */
+    public ResourceProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the {@link Resource} the {@link #getLinters()} were run against or {@code null} if {@link #isMatched()}
+     *         is {@code false}
+     */
+    public Resource getResource() {
+        return resource;
+    }
+
+    /**
+     * @return the {@link Violation}s found in {@link #getFile()}
+     */
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * @return {@code true} if {@link #getFile()} was not linted because it is binary
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * @return {@code true} if any {@code .editorconfig} properties apply to {@link #getFile()}
+     */
+    public boolean isMatched() {
+        return properties != null || upToDate;
+    }
+
+    /**
+     * @return {@code true} if {@link #getFile()} was not linted because {@link LintCache} knows it complies with the
+     *         {@code .editorconfig} rules
+     */
+    public boolean isUpToDate() {
+        return upToDate;
+    }
+
+}
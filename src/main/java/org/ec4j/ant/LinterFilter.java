@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.LinterRegistry;
+
+/**
+ * Memoizes the results of {@link LinterRegistry#filter(Path)}. Whether a path is matched by the include and exclude
+ * globs of the {@link Linter}s depends on a part of the path only, provided that the globs are simple enough:
+ * <ul>
+ * <li>If all globs have the form {@code **}{@code /*}, {@code **}{@code /*.ext} or {@code **}{@code /*.{ext1,ext2}},
+ * the result depends only on the file name extension (see {@link KeyType#EXTENSION}). This is the case with the
+ * default includes and excludes of all {@link Linter}s available so far.</li>
+ * <li>If all globs start with {@code **}{@code /} and contain no further directory separator, the result depends only
+ * on the file name (see {@link KeyType#NAME}).</li>
+ * <li>Otherwise the result depends on the whole path and nothing is memoized (see {@link KeyType#PATH}).</li>
+ * </ul>
+ * A {@code **}{@code /} glob needs a directory separator in the path to match, so whether the path has a parent
+ * directory is a part of the key too; otherwise a file in the basedir, such as {@code pom.xml}, and a file in a
+ * subdirectory, such as {@code src/a.xml}, could share the result computed for the one seen first.
+ * <p>
+ * The {@link LinterRegistry} is asked only once per distinct key, so the actual glob matching semantics stay those of
+ * the {@link LinterRegistry}. This class is thread safe.
+ */
+class LinterFilter {
+
+    /**
+     * The part of a path that determines the result of {@link LinterRegistry#filter(Path)}.
+     */
+    enum KeyType {
+        /** The part of the file name after the last dot, or an empty string if there is no dot */
+        EXTENSION,
+        /** The file name */
+        NAME,
+        /** The whole path; nothing is memoized */
+        PATH
+    }
+
+    /** A plain file name extension not containing any dot or glob special character */
+    private static final String EXT = "[^./\\\\*?\\[\\]{},]+";
+
+    private static final Pattern EXTENSION_GLOB = Pattern
+            .compile("\\*\\*/\\*(\\." + EXT + "|\\.\\{" + EXT + "(," + EXT + ")*\\})?");
+
+    private static final String DEEP_PREFIX = "**/";
+
+    /** Prepended to the keys of paths having a parent directory; cannot occur in a file name */
+    private static final String NESTED_KEY_PREFIX = "/";
+
+    /**
+     * Used as the key for {@link KeyType#EXTENSION} and also by {@link LintMetrics}, so that both group the files in
+     * the same way.
+     *
+     * @param file the file whose extension should be returned
+     * @return the part of the file name after the last dot or an empty string if there is no dot; the extension of a
+     *         dot file such as {@code .gitignore} is thus {@code gitignore}, because {@code *.gitignore} matches it
+     */
+    static String extension(Path file) {
+        final String name = file.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    /**
+     * @param globs the include and exclude globs of all {@link Linter}s in a {@link LinterRegistry}
+     * @return the {@link KeyType} that can be used to memoize the results of {@link LinterRegistry#filter(Path)}
+     */
+    static KeyType keyType(Collection<String> globs) {
+        KeyType result = KeyType.EXTENSION;
+        for (String glob : globs) {
+            if (glob == null || !glob.startsWith(DEEP_PREFIX)) {
+                return KeyType.PATH;
+            }
+            final String namePart = glob.substring(DEEP_PREFIX.length());
+            if (namePart.indexOf('/') >= 0 || namePart.indexOf('\\') >= 0 || namePart.contains("**")) {
+                /* ** crosses directory boundaries */
+                return KeyType.PATH;
+            }
+            if (!EXTENSION_GLOB.matcher(glob).matches()) {
+                result = KeyType.NAME;
+            }
+        }
+        return result;
+    }
+
+    private final ConcurrentMap<String, List<Linter>> cache = new ConcurrentHashMap<>();
+    private final KeyType keyType;
+    private final LinterRegistry registry;
+
+    /**
+     * @param registry the {@link LinterRegistry} to delegate to
+     * @param globs the include and exclude globs of all {@link Linter}s in the given {@code registry}; a superset
+     *        does no harm
+     */
+    LinterFilter(LinterRegistry registry, Collection<String> globs) {
+        super();
+        this.registry = registry;
+        this.keyType = keyType(globs);
+    }
+
+    /**
+     * @param file the path to select the {@link Linter}s for, relative to the basedir
+     * @return the same as {@link LinterRegistry#filter(Path)}
+     */
+    public List<Linter> filter(Path file) {
+        final String key;
+        switch (keyType) {
+        case EXTENSION:
+            key = extension(file);
+            break;
+        case NAME:
+            key = file.getFileName().toString();
+            break;
+        default:
+            return registry.filter(file);
+        }
+        final String useKey = file.getNameCount() > 1 ? NESTED_KEY_PREFIX + key : key;
+        List<Linter> result = cache.get(useKey);
+        if (result == null) {
+            result = registry.filter(file);
+            /* two threads may compute the same result concurrently, but the results are equal */
+            cache.put(useKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the {@link KeyType} used by this {@link LinterFilter}
+     */
+    public KeyType getKeyType() {
+        return keyType;
+    }
+
+}
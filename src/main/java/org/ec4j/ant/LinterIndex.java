@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+import org.apache.tools.ant.BuildException;
+import org.ec4j.maven.lint.api.Linter;
+
+/**
+ * Remembers the {@link Linter} implementations found via {@link ServiceLoader} per {@link ClassLoader} for the
+ * lifetime of the JVM, so that the {@code META-INF/services} resources are looked up only once even if the tasks are
+ * executed many times in a single build. Only the class names are kept so that unused {@link ClassLoader}s can still
+ * be garbage collected. This class is thread safe.
+ */
+class LinterIndex {
+
+    private static final Map<ClassLoader, List<String>> CLASS_NAMES = new WeakHashMap<>();
+
+    /**
+     * @param classLoader the {@link ClassLoader} to look up the {@link Linter}s in
+     * @return the names of the {@link Linter} classes available via the given {@code classLoader}, in the order in
+     *         which {@link ServiceLoader} returns them
+     */
+    static List<String> classNames(ClassLoader classLoader) {
+        synchronized (CLASS_NAMES) {
+            List<String> result = CLASS_NAMES.get(classLoader);
+            if (result == null) {
+                final List<String> names = new ArrayList<>();
+                for (Linter linter : ServiceLoader.load(Linter.class, classLoader)) {
+                    names.add(linter.getClass().getName());
+                }
+                result = Collections.unmodifiableList(names);
+                CLASS_NAMES.put(classLoader, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param classLoader the {@link ClassLoader} to look up the {@link Linter}s in
+     * @return new instances of all {@link Linter}s available via the given {@code classLoader}
+     */
+    static List<Linter> newLinters(ClassLoader classLoader) {
+        final List<String> classNames = classNames(classLoader);
+        final List<Linter> result = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                result.add((Linter) Class.forName(className, true, classLoader).newInstance());
+            } catch (ReflectiveOperationException e) {
+                /* cannot happen as ServiceLoader succeeded in doing the same */
+                throw new BuildException("Could not instantiate " + className, e);
+            }
+        }
+        return result;
+    }
+
+    private LinterIndex() {
+    }
+
+}
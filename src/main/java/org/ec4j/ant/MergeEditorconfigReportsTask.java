@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Resource;
+import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileProvider;
+import org.ec4j.ant.AntLintLogger.Level;
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * Combines the reports written by several {@link CheckEditorconfigTask}s having {@code shardCount} greater than
+ * {@code 1} and {@code shardReport} set. The violations of all shards are logged in the order of the shards and the
+ * task fails if there are any violations and {@link #failOnFormatViolation} is {@code true}. The task fails also if
+ * the reports do not cover all shards exactly once, so that a lost CI node cannot make the check pass.
+ * <p>
+ * Typically, every CI node runs the check with {@code failOnFormatViolation="false"} for its own {@code shardIndex}
+ * and a final step runs this task with the reports of all nodes.
+ *
+ * @since 0.0.2
+ */
+public class MergeEditorconfigReportsTask extends Task {
+
+    /**
+     * If {@code true}, the violations found in any shard are reported as errors and the build fails. If {@code false},
+     * they are reported as warnings and the build proceeds further.
+     *
+     * @since 0.0.2
+     */
+    private boolean failOnFormatViolation = true;
+
+    private Logger log = new AntLintLogger(this, Level.INFO);
+
+    /**
+     * The report files written by the individual shards.
+     *
+     * @since 0.0.2
+     */
+    private List<ResourceCollection> reports = new ArrayList<>();
+
+    /**
+     * @param resources a {@link ResourceCollection} containing the report files to merge
+     */
+    public void add(ResourceCollection resources) {
+        reports.add(resources);
+    }
+
+    /**
+     * Reads all {@link #reports} and logs their violations. The reports are read twice: first to validate the
+     * shard indices and then once again to log the violations shard by shard, so that the violations never need to be
+     * held in memory.
+     */
+    @Override
+    public void execute() {
+        AntLintLogger.updateOutputLevel(log);
+        ShardReport[] shards = null;
+        for (ResourceCollection collection : reports) {
+            final Iterator<?> it = collection.iterator();
+            while (it.hasNext()) {
+                final Resource resource = (Resource) it.next();
+                if (!(resource instanceof FileProvider)) {
+                    throw new BuildException("Only file system resources can be merged, but got " + resource,
+                            getLocation());
+                }
+                final File reportFile = ((FileProvider) resource).getFile();
+                final ShardReport report;
+                try {
+                    report = ShardReport.read(reportFile.toPath());
+                } catch (IOException e) {
+                    throw new BuildException("Could not read " + reportFile + ": " + e.getMessage(), e,
+                            getLocation());
+                }
+                if (shards == null) {
+                    shards = new ShardReport[report.getShardCount()];
+                } else if (shards.length != report.getShardCount()) {
+                    throw new BuildException(String.format(
+                            "The report '%s' was written for %d shards but the previous reports for %d shards",
+                            reportFile, report.getShardCount(), shards.length), getLocation());
+                }
+                if (report.getShardIndex() < 0 || report.getShardIndex() >= shards.length) {
+                    throw new BuildException(String.format("The report '%s' has an invalid shard index %d",
+                            reportFile, report.getShardIndex()), getLocation());
+                }
+                if (shards[report.getShardIndex()] != null) {
+                    throw new BuildException(String.format("There are multiple reports for shard %d",
+                            report.getShardIndex()), getLocation());
+                }
+                shards[report.getShardIndex()] = report;
+            }
+        }
+        if (shards == null) {
+            throw new BuildException("No editorconfig shard reports found", getLocation());
+        }
+        final List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] == null) {
+                missing.add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new BuildException(
+                    String.format("Missing the reports of shards %s out of %d", missing, shards.length),
+                    getLocation());
+        }
+
+        int checkedCount = 0;
+        int violationCount = 0;
+        final List<Integer> incomplete = new ArrayList<>();
+        for (ShardReport shard : shards) {
+            checkedCount += shard.getCheckedCount();
+            violationCount += shard.getViolationCount();
+            if (!shard.isComplete()) {
+                incomplete.add(shard.getShardIndex());
+            }
+            try {
+                shard.logViolations(log, failOnFormatViolation);
+            } catch (IOException e) {
+                throw new BuildException("Could not read " + shard.getReportFile() + ": " + e.getMessage(), e,
+                        getLocation());
+            }
+        }
+        log.info("Checked {} {} in {} shards", checkedCount, checkedCount == 1 ? "file" : "files", shards.length);
+        if (!incomplete.isEmpty()) {
+            throw new BuildException(String.format("The reports of shards %s are incomplete because their check"
+                    + " stopped early, e.g. as set by maxViolations", incomplete), getLocation());
+        }
+        if (failOnFormatViolation && violationCount > 0) {
+            throw new BuildException(
+                    "\n\nThere are .editorconfig violations. You may want to run\n\n    ant editorconfigFormat\n\nto fix them automagically.\n\n",
+                    getLocation());
+        }
+    }
+
+    public void setFailOnFormatViolation(boolean failOnFormatViolation) {
+        this.failOnFormatViolation = failOnFormatViolation;
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.ResourceCollection;
+
+/**
+ * A module root processed by a single execution of {@link CheckEditorconfigTask} or {@link FormatEditorconfigTask}
+ * together with other modules, so that all modules share one {@link org.ec4j.maven.lint.api.LinterRegistry}, one
+ * cache of parsed {@code .editorconfig} files and one pool of worker threads. If no filesets are added, the whole
+ * {@link #getDir()} is processed.
+ *
+ * @since 0.0.2
+ */
+public class ModuleConfig {
+
+    private File dir;
+    private final List<ResourceCollection> filesets = new ArrayList<>();
+    private String name;
+
+    /**
+     * @param resources a {@link ResourceCollection} containing file system resources to process
+     */
+    public void add(ResourceCollection resources) {
+        filesets.add(resources);
+    }
+
+    public void addFileset(FileSet fileset) {
+        filesets.add(fileset);
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return the {@link ResourceCollection}s added to this module or a single {@link FileSet} selecting the whole
+     *         {@link #getDir()} if none were added
+     */
+    public List<ResourceCollection> getFilesets() {
+        if (filesets.isEmpty()) {
+            final FileSet fs = new FileSet();
+            fs.setDir(dir);
+            return Collections.<ResourceCollection>singletonList(fs);
+        }
+        return Collections.unmodifiableList(filesets);
+    }
+
+    /**
+     * @return the name set via {@link #setName(String)} or the name of {@link #getDir()}
+     */
+    public String getName() {
+        return name == null ? dir.getName() : name;
+    }
+
+    public void setDir(File dir) {
+        this.dir = dir;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Runs {@link Callable}s on a fixed pool of worker threads and hands their results back in the order in which the
+ * {@link Callable}s were submitted. The number of pending results is bounded by {@link #isFull()} so that a fast
+ * producer cannot pile up an arbitrary number of results while waiting for a slow one.
+ * <p>
+ * With a single thread, no pool is created at all and each {@link Callable} is run on the calling thread as soon as it
+ * is submitted.
+ *
+ * @param <T> the result type
+ */
+class OrderedExecutor<T> implements Closeable {
+
+    /** How many pending results per worker thread we allow */
+    private static final int RESULTS_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+    private final int window;
+
+    /**
+     * @param threads the number of worker threads; if {@code 1} the {@link Callable}s are run on the calling thread
+     */
+    OrderedExecutor(int threads) {
+        if (threads <= 1) {
+            this.executor = null;
+            this.window = 1;
+        } else {
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread result = new Thread(r, "editorconfig-" + counter.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+            this.window = threads * RESULTS_PER_THREAD;
+        }
+    }
+
+    /**
+     * Cancels all pending {@link Callable}s and shuts the pool down.
+     */
+    @Override
+    public void close() {
+        for (Future<T> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@code true} if there are results that were not retrieved via {@link #next()} yet
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if no more {@link Callable}s should be submitted before {@link #next()} is called
+     */
+    public boolean isFull() {
+        return pending.size() >= window;
+    }
+
+    /**
+     * Waits for the result of the eldest pending {@link Callable} and returns it.
+     *
+     * @return the result of the eldest pending {@link Callable}
+     * @throws IOException if the {@link Callable} threw an {@link IOException}
+     */
+    public T next() throws IOException {
+        final Future<T> future = pending.removeFirst();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Interrupted while waiting for a worker thread", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new BuildException(cause);
+            }
+        }
+    }
+
+    /**
+     * Schedules the given {@link Callable} for execution.
+     *
+     * @param callable the {@link Callable} to run
+     */
+    public void submit(Callable<T> callable) {
+        if (executor == null) {
+            final FutureTask<T> task = new FutureTask<>(callable);
+            task.run();
+            pending.add(task);
+        } else {
+            pending.add(executor.submit(callable));
+        }
+    }
+
+}
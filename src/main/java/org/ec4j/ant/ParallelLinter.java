@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.tools.ant.BuildException;
+import org.ec4j.core.ResourceProperties;
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Location;
+import org.ec4j.maven.lint.api.Logger;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+
+/**
+ * Lints a single big {@link TextResource} using several threads: all {@link Linter}s applicable to the file run
+ * concurrently and the {@link #LINE_ORIENTED_LINTERS} additionally process line-aligned chunks of the file
+ * concurrently. The {@link Violation}s are returned in the same order as if the {@link Linter}s processed the whole
+ * file one after another on a single thread. The {@link Linter}s run on a dedicated thread pool, so that the callers
+ * may be the worker threads of an {@link OrderedExecutor}. This class is thread safe.
+ */
+class ParallelLinter implements Closeable {
+
+    /**
+     * A line-aligned part of a {@link TextResource} that looks like the whole file to a {@link Linter}.
+     */
+    private static class Chunk extends Resource {
+        private final int end;
+        private final int start;
+        private final String text;
+
+        Chunk(TextResource resource, String text, int start, int end) {
+            super(resource.getPath(), resource.getRelPath(), resource.getEncoding());
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Reader openReader() {
+            return new StringReader(text.substring(start, end));
+        }
+    }
+
+    /**
+     * The names of the {@link Linter} classes whose results for a line depend on that line only, except for the
+     * last line whose line terminator may be checked. Such {@link Linter}s report the same {@link Violation}s no
+     * matter whether they process a whole file or its line-aligned chunks one by one.
+     */
+    static final Set<String> LINE_ORIENTED_LINTERS = Collections
+            .unmodifiableSet(new HashSet<>(Arrays.asList("org.ec4j.maven.linters.TextLinter")));
+
+    /**
+     * @param text the text to search
+     * @param start the index to start searching at
+     * @param chunkSize the minimal number of characters of the chunk
+     * @return the index just after the first {@code \n} located at or after {@code start + chunkSize - 1}, or the
+     *         length of the {@code text} if there is no such {@code \n}
+     */
+    static int chunkEnd(String text, int start, int chunkSize) {
+        if (text.length() - start <= chunkSize) {
+            return text.length();
+        }
+        final int lf = text.indexOf('\n', start + chunkSize - 1);
+        return lf < 0 ? text.length() : lf + 1;
+    }
+
+    /**
+     * Counts the lines the same way as {@link org.ec4j.maven.lint.api.LineReader} does, i.e. {@code \n},
+     * {@code \r\n} and a standalone {@code \r} terminate a line.
+     *
+     * @param text the text to count the lines in
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @return the number of line terminators between {@code start} and {@code end}
+     */
+    static int countLines(String text, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            final char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= end || text.charAt(i + 1) != '\n'))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static void rethrow(ExecutionException e) throws IOException {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new BuildException(cause);
+    }
+
+    private final int chunkSize;
+    private final ExecutorService executor;
+    private final Logger log;
+
+    /**
+     * @param threads the number of threads to run the {@link Linter}s on
+     * @param chunkSize the number of characters from which a file is split into chunks; the chunks end at the first
+     *        line end after this number of characters
+     * @param log the {@link Logger} to use
+     */
+    ParallelLinter(int threads, int chunkSize, Logger log) {
+        super();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread result = new Thread(r, "editorconfig-chunk-" + counter.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+        this.chunkSize = chunkSize;
+        this.log = log;
+    }
+
+    /**
+     * @param text the content of a file
+     * @return {@code true} if the given {@code text} is big enough to be processed by this {@link ParallelLinter}
+     */
+    public boolean accepts(String text) {
+        return text.length() > chunkSize;
+    }
+
+    /**
+     * Runs the given {@code linters} against the given {@code resource} concurrently.
+     *
+     * @param resource the {@link TextResource} to lint
+     * @param text the content of the {@code resource}
+     * @param linters the {@link Linter}s to run
+     * @param properties the {@code .editorconfig} properties applicable to the {@code resource}
+     * @param metrics the {@link LintMetrics} to record the time spent per {@link Linter} in or {@code null}
+     * @param size the size of the file in bytes, used for the {@code metrics} only
+     * @return the {@link Violation}s found
+     * @throws IOException on I/O problems
+     */
+    public List<Violation> lint(final TextResource resource, String text, List<Linter> linters,
+            final ResourceProperties properties, LintMetrics metrics, long size) throws IOException {
+        final List<Future<List<Violation>>> futures = new ArrayList<>();
+        final AtomicLongArray linterNanos = new AtomicLongArray(linters.size());
+        final boolean chunkable = Violations.canRelocate();
+        for (int i = 0; i < linters.size(); i++) {
+            final Linter linter = linters.get(i);
+            if (chunkable && LINE_ORIENTED_LINTERS.contains(linter.getClass().getName())) {
+                int start = 0;
+                int line = 0;
+                int chunkCount = 0;
+                while (start < text.length()) {
+                    final int end = chunkEnd(text, start, chunkSize);
+                    final Chunk chunk = new Chunk(resource, text, start, end);
+                    futures.add(executor.submit(newTask(linter, chunk, resource, properties, line, linterNanos, i)));
+                    line += countLines(text, start, end);
+                    start = end;
+                    chunkCount++;
+                }
+                log.debug("Processing file '{}' using linter {} in {} chunks", resource,
+                        linter.getClass().getName(), chunkCount);
+            } else {
+                futures.add(executor.submit(newTask(linter, resource, resource, properties, 0, linterNanos, i)));
+            }
+        }
+        final List<Violation> result = new ArrayList<>();
+        try {
+            for (Future<List<Violation>> future : futures) {
+                result.addAll(future.get());
+            }
+            if (metrics != null) {
+                for (int i = 0; i < linters.size(); i++) {
+                    metrics.addLinter(linters.get(i), size, linterNanos.get(i));
+                }
+            }
+        } catch (ExecutionException e) {
+            rethrow(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("Interrupted while linting " + resource, e);
+        } finally {
+            for (Future<List<Violation>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancels all pending work and shuts the thread pool down.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param linter the {@link Linter} to run
+     * @param input the {@link Resource} to pass to the {@code linter}
+     * @param resource the {@link Resource} to report the {@link Violation}s for
+     * @param properties the {@code .editorconfig} properties applicable to the {@code resource}
+     * @param lineOffset the number of lines preceding the {@code input} in the {@code resource}
+     * @param linterNanos where to add the time spent to
+     * @param linterIndex the index of the {@code linter} in {@code linterNanos}
+     * @return a new {@link Callable} returning the {@link Violation}s found
+     */
+    private Callable<List<Violation>> newTask(final Linter linter, final Resource input, final Resource resource,
+            final ResourceProperties properties, final int lineOffset, final AtomicLongArray linterNanos,
+            final int linterIndex) {
+        return new Callable<List<Violation>>() {
+            @Override
+            public List<Violation> call() throws Exception {
+                final long start = System.nanoTime();
+                final RecordingViolationHandler recorder = new RecordingViolationHandler(log);
+                recorder.startFile(input);
+                linter.process(input, properties, recorder);
+                recorder.endFile();
+                linterNanos.addAndGet(linterIndex, System.nanoTime() - start);
+                final List<Violation> violations = recorder.getViolations();
+                if (input == resource) {
+                    return violations;
+                }
+                final List<Violation> result = new ArrayList<>(violations.size());
+                for (Violation violation : violations) {
+                    final Location location = violation.getLocation();
+                    result.add(Violations.relocate(violation, resource,
+                            new Location(location.getLine() + lineOffset, location.getColumn())));
+                }
+                return result;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the differences between the original and the formatted content of files to a single patch file in the
+ * unified diff format, as produced by {@code diff -u} and understood by {@code patch -p1} and {@code git apply}.
+ * <p>
+ * The lines are compared using the Myers difference algorithm. Each file's hunks are encoded using the encoding of
+ * that file so that the patch applies to the files byte by byte.
+ */
+class PatchWriter implements Closeable {
+
+    /** The number of unchanged lines to show around the changed ones */
+    static final int CONTEXT = 3;
+
+    /**
+     * The maximal number of inserted and deleted lines for which the shortest edit script is searched for. If the
+     * files differ more, the whole range between the common prefix and the common suffix is reported as changed.
+     */
+    static final int MAX_EDIT_DISTANCE = 1024;
+
+    private static final char DELETE = '-';
+    private static final char EQUAL = ' ';
+    private static final char INSERT = '+';
+
+    private static void appendRange(StringBuilder out, int start, int length) {
+        /* an empty range is identified by the line preceding it */
+        out.append(length == 0 ? start : start + 1).append(',').append(length);
+    }
+
+    /**
+     * Appends the unified diff of the given {@code original} and {@code revised} lines to {@code out}.
+     *
+     * @param out where to append the diff
+     * @param path the path of the file to use in the file headers, using {@code /} as a separator
+     * @param original the original lines, including their line terminators
+     * @param revised the revised lines, including their line terminators
+     */
+    static void diff(StringBuilder out, String path, List<String> original, List<String> revised) {
+        final char[] ops = shortestEditScript(original, revised);
+        int changeCount = 0;
+        for (char op : ops) {
+            if (op != EQUAL) {
+                changeCount++;
+            }
+        }
+        if (changeCount == 0) {
+            return;
+        }
+        out.append("--- a/").append(path).append('\n');
+        out.append("+++ b/").append(path).append('\n');
+        int i = 0;
+        /* the line numbers corresponding to ops[i] */
+        int a = 0;
+        int b = 0;
+        /* the end of the previous hunk */
+        int previousEnd = 0;
+        while (i < ops.length) {
+            /* find the next change */
+            while (i < ops.length && ops[i] == EQUAL) {
+                i++;
+                a++;
+                b++;
+            }
+            if (i == ops.length) {
+                break;
+            }
+            /* the hunk starts with up to CONTEXT equal lines */
+            final int leading = Math.min(CONTEXT, i - previousEnd);
+            final int hunkStart = i - leading;
+            final int aStart = a - leading;
+            final int bStart = b - leading;
+            /* extend the hunk as long as the gaps between changes are shorter than 2 * CONTEXT */
+            int end = i;
+            int equalRun = 0;
+            int j = i;
+            while (j < ops.length) {
+                if (ops[j] == EQUAL) {
+                    equalRun++;
+                    if (equalRun > 2 * CONTEXT) {
+                        break;
+                    }
+                } else {
+                    equalRun = 0;
+                    end = j + 1;
+                }
+                j++;
+            }
+            final int hunkEnd = Math.min(ops.length, end + CONTEXT);
+            int aLength = 0;
+            int bLength = 0;
+            for (int k = hunkStart; k < hunkEnd; k++) {
+                if (ops[k] != INSERT) {
+                    aLength++;
+                }
+                if (ops[k] != DELETE) {
+                    bLength++;
+                }
+            }
+            out.append("@@ -");
+            appendRange(out, aStart, aLength);
+            out.append(" +");
+            appendRange(out, bStart, bLength);
+            out.append(" @@\n");
+            int ai = aStart;
+            int bi = bStart;
+            for (int k = hunkStart; k < hunkEnd; k++) {
+                final String line;
+                switch (ops[k]) {
+                case EQUAL:
+                    line = original.get(ai++);
+                    bi++;
+                    break;
+                case DELETE:
+                    line = original.get(ai++);
+                    break;
+                default:
+                    line = revised.get(bi++);
+                    break;
+                }
+                out.append(ops[k]).append(line);
+                if (!line.endsWith("\n")) {
+                    out.append("\n\\ No newline at end of file\n");
+                }
+            }
+            i = hunkEnd;
+            previousEnd = hunkEnd;
+            a = ai;
+            b = bi;
+        }
+    }
+
+    /**
+     * @param text the text to split
+     * @return the lines of the given {@code text} including their terminating {@code \n}; the last line has no
+     *         terminator if the {@code text} does not end with {@code \n}
+     */
+    static List<String> lines(String text) {
+        final List<String> result = new ArrayList<>();
+        int start = 0;
+        int eol;
+        while ((eol = text.indexOf('\n', start)) >= 0) {
+            result.add(text.substring(start, eol + 1));
+            start = eol + 1;
+        }
+        if (start < text.length()) {
+            result.add(text.substring(start));
+        }
+        return result;
+    }
+
+    /**
+     * Computes a shortest edit script transforming {@code a} into {@code b} using the greedy Myers algorithm. The
+     * common prefix and suffix are stripped beforehand.
+     *
+     * @param a the original lines
+     * @param b the revised lines
+     * @return an array of {@link #EQUAL}, {@link #DELETE} and {@link #INSERT} operations, deletions preceding
+     *         insertions within a change
+     */
+    static char[] shortestEditScript(List<String> a, List<String> b) {
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size() && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+        final List<String> aMiddle = a.subList(prefix, a.size() - suffix);
+        final List<String> bMiddle = b.subList(prefix, b.size() - suffix);
+        final char[] middle = myers(aMiddle, bMiddle);
+        final char[] result = new char[prefix + middle.length + suffix];
+        Arrays.fill(result, 0, prefix, EQUAL);
+        System.arraycopy(middle, 0, result, prefix, middle.length);
+        Arrays.fill(result, prefix + middle.length, result.length, EQUAL);
+        return result;
+    }
+
+    private static char[] myers(List<String> a, List<String> b) {
+        final int n = a.size();
+        final int m = b.size();
+        final int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        final int offset = max + 1;
+        final int[] v = new int[2 * max + 3];
+        final List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, offset, n, m);
+                }
+            }
+        }
+        /* too many differences: replace everything */
+        final char[] result = new char[n + m];
+        Arrays.fill(result, 0, n, DELETE);
+        Arrays.fill(result, n, n + m, INSERT);
+        return result;
+    }
+
+    private static char[] backtrack(List<int[]> trace, int offset, int n, int m) {
+        final char[] reversed = new char[n + m];
+        int length = 0;
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d >= 0; d--) {
+            final int[] v = trace.get(d);
+            final int k = x - y;
+            final int prevK = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) ? k + 1 : k - 1;
+            final int prevX = v[offset + prevK];
+            final int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                reversed[length++] = EQUAL;
+                x--;
+                y--;
+            }
+            if (d > 0) {
+                if (x == prevX) {
+                    reversed[length++] = INSERT;
+                    y--;
+                } else {
+                    reversed[length++] = DELETE;
+                    x--;
+                }
+            }
+        }
+        final char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = reversed[length - 1 - i];
+        }
+        /* within each change, put the deletions first as diff -u does */
+        int i = 0;
+        while (i < result.length) {
+            if (result[i] == EQUAL) {
+                i++;
+                continue;
+            }
+            int end = i;
+            int deletes = 0;
+            while (end < result.length && result[end] != EQUAL) {
+                if (result[end] == DELETE) {
+                    deletes++;
+                }
+                end++;
+            }
+            Arrays.fill(result, i, i + deletes, DELETE);
+            Arrays.fill(result, i + deletes, end, INSERT);
+            i = end;
+        }
+        return result;
+    }
+
+    private int fileCount;
+    private final OutputStream out;
+
+    /**
+     * @param patchFile the file to write; its parent directories are created if needed
+     * @throws IOException on I/O problems
+     */
+    PatchWriter(Path patchFile) throws IOException {
+        super();
+        final Path parent = patchFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.out = new BufferedOutputStream(Files.newOutputStream(patchFile));
+    }
+
+    /**
+     * Appends the differences between the given {@code original} and {@code revised} content to the patch file.
+     *
+     * @param file the path of the file relative to the directory the patch should be applied in
+     * @param original the original content of the {@code file}
+     * @param revised the formatted content of the {@code file}
+     * @param encoding the encoding of the {@code file}
+     * @throws IOException on I/O problems
+     */
+    public void append(Path file, String original, String revised, Charset encoding) throws IOException {
+        final String path = file.toString().replace(file.getFileSystem().getSeparator(), "/");
+        final StringBuilder hunks = new StringBuilder();
+        diff(hunks, path, lines(original), lines(revised));
+        if (hunks.length() > 0) {
+            final int headersEnd = hunks.indexOf("@@");
+            out.write(hunks.substring(0, headersEnd).getBytes(StandardCharsets.UTF_8));
+            out.write(hunks.substring(headersEnd).getBytes(encoding));
+            fileCount++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * @return the number of files appended so far
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+}
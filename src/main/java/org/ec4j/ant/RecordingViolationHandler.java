@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ec4j.maven.lint.api.Logger;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+import org.ec4j.maven.lint.api.ViolationHandler;
+
+/**
+ * A {@link ViolationHandler} that just records the {@link Violation}s of a single file so that they can be passed to
+ * the actual {@link ViolationHandler} later, possibly on another thread.
+ */
+class RecordingViolationHandler implements ViolationHandler {
+
+    private final Logger log;
+    private final List<Violation> violations = new ArrayList<>();
+
+    RecordingViolationHandler(Logger log) {
+        super();
+        this.log = log;
+    }
+
+    /** @return always {@link ViolationHandler.ReturnState#FINISHED} */
+    @Override
+    public ReturnState endFile() {
+        return ReturnState.FINISHED;
+    }
+
+    @Override
+    public void endFiles() {
+    }
+
+    @Override
+    public Logger getLogger() {
+        return log;
+    }
+
+    /**
+     * @return the {@link Violation}s recorded so far in the order as they were reported
+     */
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    @Override
+    public void handle(Violation violation) {
+        violations.add(violation);
+    }
+
+    @Override
+    public void startFile(Resource file) {
+    }
+
+    @Override
+    public void startFiles() {
+    }
+
+}
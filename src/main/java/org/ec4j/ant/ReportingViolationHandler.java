@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.ec4j.maven.lint.api.FormatException;
+import org.ec4j.maven.lint.api.Logger;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+import org.ec4j.maven.lint.api.ViolationCollector;
+import org.ec4j.maven.lint.api.ViolationHandler;
+
+/**
+ * A {@link ViolationHandler} for {@link CheckEditorconfigTask} that logs the same messages as
+ * {@link ViolationCollector} but, unlike {@link ViolationCollector}, keeps no {@link Violation}s in memory: every
+ * {@link Violation} is logged and passed to the {@link ViolationReporter}s right away and only the counts are kept.
+ * Optionally, only the first {@code maxLoggedViolations} are logged, so that the log stays readable and small even
+ * with millions of {@link Violation}s, while the reports get all of them.
+ */
+class ReportingViolationHandler implements ViolationHandler, Closeable {
+
+    private final String correctiveAction;
+    private Resource currentFile;
+    private int currentFileViolationCount;
+    private final boolean failOnFormatViolation;
+    private final Logger log;
+    private final int maxLoggedViolations;
+    private final int maxViolations;
+    private int processedFileCount;
+    private final List<ViolationReporter> reporters;
+    private int violationCount;
+
+    /**
+     * @param failOnFormatViolation if {@code true} the {@link Violation}s are logged as errors and
+     *        {@link #endFiles()} throws a {@link FormatException} if there are any; otherwise they are logged as
+     *        warnings
+     * @param correctiveAction the command to recommend in the failure message
+     * @param log the {@link Logger} to log to
+     * @param maxViolations if greater than {@code 0} and {@code failOnFormatViolation} is {@code true}, a
+     *        {@link FormatException} is thrown as soon as this number of {@link Violation}s is reached
+     * @param maxLoggedViolations if greater than {@code 0}, the {@link Violation}s above this number are not logged
+     * @param reporters the {@link ViolationReporter}s to pass the {@link Violation}s to; they are closed by
+     *        {@link #close()}
+     */
+    ReportingViolationHandler(boolean failOnFormatViolation, String correctiveAction, Logger log, int maxViolations,
+            int maxLoggedViolations, List<ViolationReporter> reporters) {
+        super();
+        this.failOnFormatViolation = failOnFormatViolation;
+        this.correctiveAction = correctiveAction;
+        this.log = log;
+        this.maxViolations = maxViolations;
+        this.maxLoggedViolations = maxLoggedViolations;
+        this.reporters = reporters;
+    }
+
+    /**
+     * Closes all {@link ViolationReporter}s, deleting their temporary files unless {@link #endFiles()} has finished
+     * them.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ViolationReporter reporter : reporters) {
+            try {
+                reporter.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public ReturnState endFile() {
+        if (log.isDebugEnabled() && currentFileViolationCount == 0) {
+            log.debug("No formatting violations found in file '{}'", currentFile);
+        }
+        try {
+            for (ViolationReporter reporter : reporters) {
+                reporter.endFile();
+            }
+        } catch (IOException e) {
+            throw reportFailure(e);
+        }
+        currentFile = null;
+        processedFileCount++;
+        return ReturnState.FINISHED;
+    }
+
+    @Override
+    public void endFiles() {
+        finishReporters(true);
+        log.info("Checked {} {}", processedFileCount, processedFileCount == 1 ? "file" : "files");
+        if (failOnFormatViolation && violationCount > 0) {
+            throw new FormatException("There are .editorconfig violations. You may want to run\n\n    "
+                    + correctiveAction + "\n\nto fix them automagically.");
+        }
+    }
+
+    /**
+     * @param complete {@code false} if the check stops before all files were checked
+     */
+    private void finishReporters(boolean complete) {
+        if (maxLoggedViolations > 0 && violationCount > maxLoggedViolations) {
+            log.warn("{} more violations were not logged as set by maxLoggedViolations",
+                    violationCount - maxLoggedViolations);
+        }
+        try {
+            for (ViolationReporter reporter : reporters) {
+                reporter.endFiles(processedFileCount, violationCount, complete);
+                log.info("Violation report written to '{}'", reporter.getReportFile());
+            }
+        } catch (IOException e) {
+            throw reportFailure(e);
+        }
+    }
+
+    @Override
+    public Logger getLogger() {
+        return log;
+    }
+
+    @Override
+    public void handle(Violation violation) {
+        violationCount++;
+        currentFileViolationCount++;
+        if (maxLoggedViolations <= 0 || violationCount <= maxLoggedViolations) {
+            if (failOnFormatViolation) {
+                log.error(violation.toString());
+            } else {
+                log.warn(violation.toString());
+            }
+        }
+        try {
+            for (ViolationReporter reporter : reporters) {
+                reporter.violation(violation, failOnFormatViolation);
+            }
+        } catch (IOException e) {
+            throw reportFailure(e);
+        }
+        if (failOnFormatViolation && maxViolations > 0 && violationCount >= maxViolations) {
+            /* the reports are complete up to here */
+            try {
+                for (ViolationReporter reporter : reporters) {
+                    reporter.endFile();
+                }
+            } catch (IOException e) {
+                throw reportFailure(e);
+            }
+            finishReporters(false);
+            /* propagates out of the execute() loop which cancels all pending work */
+            throw new FormatException(String.format(
+                    "There are .editorconfig violations. Stopped checking after the first %d of them as set by maxViolations. You may want to run\n\n    %s\n\nto fix them automagically.",
+                    violationCount, correctiveAction));
+        }
+    }
+
+    private FormatException reportFailure(IOException e) {
+        return new FormatException("Could not write the violation report: " + e.getMessage(), e);
+    }
+
+    @Override
+    public void startFile(Resource file) {
+        currentFile = file;
+        currentFileViolationCount = 0;
+        try {
+            for (ViolationReporter reporter : reporters) {
+                reporter.startFile(file);
+            }
+        } catch (IOException e) {
+            throw reportFailure(e);
+        }
+    }
+
+    @Override
+    public void startFiles() {
+        processedFileCount = 0;
+        violationCount = 0;
+        try {
+            for (ViolationReporter reporter : reporters) {
+                reporter.startFiles();
+            }
+        } catch (IOException e) {
+            throw reportFailure(e);
+        }
+    }
+
+}
@@ -0,0 +1,490 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.IntrospectionHelper;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.ec4j.ant.AntLintLogger.Level;
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Logger;
+
+/**
+ * A long-lived server performing the checks requested by {@link CheckEditorconfigTask}s having their {@code server}
+ * attribute set. The {@link Linter}s, the parsed {@code .editorconfig} files and the JIT compiled code stay resident
+ * between the requests, so that only the first check pays the warm-up costs. This is handy for IDE save hooks and
+ * other tools checking a few files many times an hour.
+ * <p>
+ * The server listens on the loopback interface only and serves the requests one after another. It accepts only the
+ * requests carrying the random token stored in the {@link #portFile}. It never formats any file, but it writes the
+ * {@link #cacheFile}, the {@link #metricsFile} and the {@link #reportFile} if they are set. These files, the
+ * {@link #gitExecutable} and the {@link Linter}s available on the class path of this task are configured on the server
+ * only; the clients cannot change them. See {@link ServerProtocol} for the wire format.
+ * <p>
+ * With {@link #stop} set to {@code true}, this task does not start a server but stops a running one instead.
+ *
+ * @since 0.0.2
+ */
+public class ServerEditorconfigTask extends Task {
+
+    /**
+     * Forwards the messages logged during a request to the client. It does not filter the messages by their priority,
+     * because the clients send the most verbose {@link AntLintLogger.Level} their own listeners output as the
+     * {@code logLevel} of the request.
+     */
+    private static class ForwardingListener implements BuildListener {
+        private IOException failure;
+        private final Writer out;
+
+        ForwardingListener(Writer out) {
+            super();
+            this.out = out;
+        }
+
+        @Override
+        public void buildFinished(BuildEvent event) {
+        }
+
+        @Override
+        public void buildStarted(BuildEvent event) {
+        }
+
+        @Override
+        public void messageLogged(BuildEvent event) {
+            synchronized (out) {
+                if (failure == null) {
+                    try {
+                        ServerProtocol.writeLine(out, ServerProtocol.LOG,
+                                event.getPriority() + " " + event.getMessage());
+                        if (event.getPriority() <= Project.MSG_WARN) {
+                            /* let the client see the violations as soon as possible */
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        /* the client has gone; the check will fail on reading the next file */
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void targetFinished(BuildEvent event) {
+        }
+
+        @Override
+        public void targetStarted(BuildEvent event) {
+        }
+
+        @Override
+        public void taskFinished(BuildEvent event) {
+        }
+
+        @Override
+        public void taskStarted(BuildEvent event) {
+        }
+    }
+
+    /**
+     * The files sent by the client, read lazily from the connection so that linting can start before the client has
+     * sent all of them. Like {@link FileSetScanner}, skips the files that do not exist and directories.
+     */
+    private static class RemoteFiles implements Iterator<Path> {
+        private final BufferedReader in;
+        private String line;
+        private Path next;
+
+        RemoteFiles(BufferedReader in, String firstLine) {
+            super();
+            this.in = in;
+            this.line = firstLine;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (line == null) {
+                    throw new BuildException("The client disconnected before sending all files");
+                }
+                if (ServerProtocol.END.equals(line)) {
+                    return false;
+                }
+                final String[] parts = ServerProtocol.split(line);
+                if (!ServerProtocol.FILE.equals(parts[0])) {
+                    throw new BuildException("Unexpected line '" + line + "'");
+                }
+                try {
+                    line = in.readLine();
+                } catch (IOException e) {
+                    throw new BuildException("Could not read the next file from the client: " + e.getMessage(), e);
+                }
+                final Path file = Paths.get(parts[1]);
+                if (Files.isRegularFile(file)) {
+                    next = file;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Path result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** A client sending no line for this long is considered gone */
+    private static final int CLIENT_TIMEOUT_MILLIS = 60000;
+
+    /** The reference under which the parsed {@code .editorconfig} files are kept between the requests */
+    private static final String PROPERTIES_CACHE_REF = "editorconfig.server.propertiesCache";
+
+    /**
+     * The {@code cacheFile} of every check, see {@link AbstractEditorconfigTask#cacheFile}.
+     *
+     * @since 0.0.2
+     */
+    private File cacheFile;
+
+    /**
+     * The {@code gitExecutable} of every check, see {@link AbstractEditorconfigTask#gitExecutable}.
+     *
+     * @since 0.0.2
+     */
+    private String gitExecutable = "git";
+
+    /**
+     * The number of seconds without any request after which the server stops. {@code 0} means to run until stopped via
+     * {@link #stop}.
+     *
+     * @since 0.0.2
+     */
+    private int idleTimeout;
+
+    /** Created lazily on the first request and kept afterwards */
+    private LinterFilter linterFilter;
+
+    private Logger log = new AntLintLogger(this, Level.INFO);
+
+    /**
+     * The {@code metricsFile} of every check, see {@link AbstractEditorconfigTask#metricsFile}.
+     *
+     * @since 0.0.2
+     */
+    private File metricsFile;
+
+    /**
+     * The TCP port to listen on or, if {@link #stop} is {@code true}, the port of the server to stop. {@code 0} means
+     * any free port when starting and the port stored in {@link #portFile} when stopping.
+     *
+     * @since 0.0.2
+     */
+    private int port;
+
+    /**
+     * A file to store the port the server listens on and the token the clients have to send to. Only the owner of the
+     * file can read it where the file system supports POSIX permissions. The file is deleted when the server stops.
+     * Required because the clients cannot use the server without the token.
+     *
+     * @since 0.0.2
+     */
+    private File portFile;
+
+    /**
+     * The {@code reportFile} of every check, see {@link CheckEditorconfigTask#setReportFile(File)}.
+     *
+     * @since 0.0.2
+     */
+    private File reportFile;
+
+    /**
+     * The {@code reportFormat} of every check, see {@link CheckEditorconfigTask#setReportFormat(String)}.
+     *
+     * @since 0.0.2
+     */
+    private String reportFormat;
+
+    /** The {@link Project} the requests are executed in, kept between the requests */
+    private Project requestProject;
+
+    /**
+     * If {@code true}, a running server is stopped rather than a new one started.
+     *
+     * @since 0.0.2
+     */
+    private boolean stop;
+
+    /** The token the clients have to send, generated on startup */
+    private String token;
+
+    /**
+     * Handles a single connection.
+     *
+     * @param socket the connection to handle
+     * @return {@code true} if the server should continue accepting connections
+     * @throws IOException on I/O problems
+     */
+    private boolean accept(Socket socket) throws IOException {
+        socket.setSoTimeout(CLIENT_TIMEOUT_MILLIS);
+        final BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        final Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        final String header = in.readLine();
+        if (!ServerProtocol.HEADER.equals(header)) {
+            ServerProtocol.writeLine(out, ServerProtocol.FAIL,
+                    "Unsupported protocol '" + header + "'; expected '" + ServerProtocol.HEADER + "'");
+            out.flush();
+            return true;
+        }
+        final String tokenLine = in.readLine();
+        final String[] tokenParts = tokenLine == null ? null : ServerProtocol.split(tokenLine);
+        if (tokenParts == null || !ServerProtocol.TOKEN.equals(tokenParts[0])
+                || !ServerProtocol.isValidToken(token, tokenParts[1])) {
+            log.warn("Rejected a request with a missing or invalid access token");
+            ServerProtocol.writeLine(out, ServerProtocol.FAIL, "Missing or invalid access token");
+            out.flush();
+            return true;
+        }
+        final String command = in.readLine();
+        if (ServerProtocol.STOP.equals(command)) {
+            ServerProtocol.writeLine(out, ServerProtocol.OK, null);
+            out.flush();
+            return false;
+        } else if (ServerProtocol.CHECK.equals(command)) {
+            check(in, out);
+        } else {
+            ServerProtocol.writeLine(out, ServerProtocol.FAIL, "Unsupported command '" + command + "'");
+        }
+        out.flush();
+        socket.shutdownOutput();
+        try {
+            while (in.readLine() != null) {
+                /* closing a socket with unread input would reset the connection and the client could miss the response */
+            }
+        } catch (IOException e) {
+            /* the client has read the response and closed the connection */
+        }
+        return true;
+    }
+
+    private void check(BufferedReader in, Writer out) throws IOException {
+        final long start = System.nanoTime();
+        final CheckEditorconfigTask task = new CheckEditorconfigTask();
+        task.setProject(requestProject);
+        task.setTaskName("editorconfigCheck");
+        task.setPropertiesCacheRef(PROPERTIES_CACHE_REF);
+        task.setCacheFile(cacheFile);
+        task.setGitExecutable(gitExecutable);
+        task.setMetricsFile(metricsFile);
+        task.setReportFile(reportFile);
+        task.setReportFormat(reportFormat);
+        if (linterFilter == null) {
+            final List<String> linterGlobs = new ArrayList<>();
+            linterFilter = new LinterFilter(task.buildLinterRegistry(linterGlobs), linterGlobs);
+        }
+        task.linterFilter = linterFilter;
+        final IntrospectionHelper introspection = IntrospectionHelper.getHelper(requestProject,
+                CheckEditorconfigTask.class);
+        final ForwardingListener listener = new ForwardingListener(out);
+        requestProject.addBuildListener(listener);
+        int fileCount = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final String[] parts = ServerProtocol.split(line);
+                if (ServerProtocol.BASEDIR.equals(parts[0])) {
+                    requestProject.setBaseDir(new File(parts[1]));
+                } else if (ServerProtocol.OPTION.equals(parts[0])) {
+                    final int space = parts[1].indexOf(' ');
+                    final String name = space < 0 ? parts[1] : parts[1].substring(0, space);
+                    if (!ServerProtocol.OPTIONS.contains(name)) {
+                        throw new BuildException("Unsupported option '" + name + "'");
+                    }
+                    introspection.setAttribute(requestProject, task, name,
+                            space < 0 ? "" : parts[1].substring(space + 1));
+                } else {
+                    break;
+                }
+            }
+            task.includedFiles = new RemoteFiles(in, line);
+            task.execute();
+            synchronized (out) {
+                ServerProtocol.writeLine(out, ServerProtocol.OK, null);
+            }
+        } catch (BuildException e) {
+            synchronized (out) {
+                ServerProtocol.writeLine(out, ServerProtocol.FAIL, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            /* a bug or an unexpected input must not stop the whole server */
+            log.warn("Could not serve a check request: {}", e);
+            synchronized (out) {
+                ServerProtocol.writeLine(out, ServerProtocol.FAIL, e.toString());
+            }
+        } finally {
+            requestProject.removeBuildListener(listener);
+        }
+        log.debug("Served a check request in {} ms", (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Starts the server and blocks until it is stopped or until the {@link #idleTimeout} expires. If {@link #stop} is
+     * {@code true}, stops a running server instead.
+     */
+    @Override
+    public void execute() {
+        AntLintLogger.updateOutputLevel(log);
+        if (stop) {
+            stopServer();
+            return;
+        }
+        if (portFile == null) {
+            throw new BuildException("Set portFile so that the clients can read the access token from it",
+                    getLocation());
+        }
+        token = ServerProtocol.newToken();
+        requestProject = new Project();
+        requestProject.setBaseDir(getProject().getBaseDir());
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverSocket.setSoTimeout(idleTimeout * 1000);
+            log.info("editorconfig server listening on {}", serverSocket.getLocalSocketAddress());
+            ServerProtocol.writePortFile(portFile.toPath(), serverSocket.getLocalPort(), token);
+            boolean running = true;
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    running = accept(socket);
+                } catch (SocketTimeoutException e) {
+                    log.info("Stopping the editorconfig server after {} s without any request", idleTimeout);
+                    running = false;
+                } catch (IOException e) {
+                    log.warn("Could not serve a request: {}", e.getMessage());
+                } catch (RuntimeException e) {
+                    log.warn("Could not serve a request: {}", e);
+                }
+            }
+            log.info("editorconfig server stopped");
+        } catch (IOException e) {
+            throw new BuildException("Could not run the editorconfig server: " + e.getMessage(), e, getLocation());
+        } finally {
+            try {
+                Files.deleteIfExists(portFile.toPath());
+            } catch (IOException e) {
+                log.warn("Could not delete {}: {}", portFile, e.getMessage());
+            }
+        }
+    }
+
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public void setGitExecutable(String gitExecutable) {
+        this.gitExecutable = gitExecutable;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public void setPortFile(File portFile) {
+        this.portFile = portFile;
+    }
+
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public void setReportFormat(String reportFormat) {
+        this.reportFormat = reportFormat;
+    }
+
+    public void setStop(boolean stop) {
+        this.stop = stop;
+    }
+
+    private void stopServer() {
+        if (portFile == null) {
+            throw new BuildException("Set portFile to stop an editorconfig server", getLocation());
+        }
+        int usePort = port;
+        try {
+            final String[] portAndToken = ServerProtocol.readPortFile(portFile.toPath());
+            if (usePort == 0) {
+                usePort = Integer.parseInt(portAndToken[0]);
+            }
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), usePort)) {
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                ServerProtocol.writeLine(out, ServerProtocol.HEADER, null);
+                ServerProtocol.writeLine(out, ServerProtocol.TOKEN, portAndToken[1]);
+                ServerProtocol.writeLine(out, ServerProtocol.STOP, null);
+                out.flush();
+                final String response = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (!ServerProtocol.OK.equals(response)) {
+                    throw new BuildException("Unexpected response from the editorconfig server: " + response,
+                            getLocation());
+                }
+            }
+            log.info("Stopped the editorconfig server on port {}", usePort);
+        } catch (IOException | NumberFormatException e) {
+            throw new BuildException("Could not stop the editorconfig server: " + e.getMessage(), e, getLocation());
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * The line based protocol spoken between {@link ServerEditorconfigTask} and {@link CheckEditorconfigTask} with
+ * {@code server} set. All lines are encoded in UTF-8 and terminated by {@code \n}. A request looks as follows:
+ *
+ * <pre>
+ * editorconfig-server/1
+ * token 3f1c...
+ * check
+ * basedir /path/to/project
+ * option encoding UTF-8
+ * option threads 4
+ * file /path/to/project/README.adoc
+ * file /path/to/project/pom.xml
+ * end
+ * </pre>
+ *
+ * The server answers with any number of {@code log <antPriority> <message>} lines followed by either {@code ok} or
+ * {@code fail <message>}. A {@code stop} request consists of the first three lines only and it is answered by
+ * {@code ok}. Backslashes, line feeds and carriage returns in paths and messages are escaped by a backslash.
+ * <p>
+ * The {@code token} is a random secret generated by the server on startup. It is stored in the port file together with
+ * the port, see {@link #writePortFile(Path, int, String)}. Requests with a missing or wrong {@code token} are
+ * rejected, so that only the users able to read the port file can use or stop the server.
+ */
+class ServerProtocol {
+
+    static final String BASEDIR = "basedir";
+    static final String CHECK = "check";
+    static final String END = "end";
+    static final String FAIL = "fail";
+    static final String FILE = "file";
+    static final String HEADER = "editorconfig-server/1";
+    static final String LOG = "log";
+    static final String OK = "ok";
+    static final String OPTION = "option";
+
+    /**
+     * The attributes of {@link CheckEditorconfigTask} a client may pass to the server. Attributes naming files to
+     * write or executables to run are deliberately missing; they can be set on {@link ServerEditorconfigTask} only.
+     */
+    static final Set<String> OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("changedSince",
+            "chunkSize", "encoding", "failOnFormatViolation", "failOnNoMatchingProperties", "logLevel",
+            "maxLoggedViolations", "maxViolations", "onlyStaged", "skipBinaryFiles", "slowestFiles", "threads")));
+
+    static final String STOP = "stop";
+    static final String TOKEN = "token";
+
+    private static final int TOKEN_BYTES = 16;
+
+    /**
+     * @param value the {@link String} to escape
+     * @return the given {@code value} with backslashes, line feeds and carriage returns escaped
+     */
+    static String escape(String value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                result.append("\\\\");
+                break;
+            case '\n':
+                result.append("\\n");
+                break;
+            case '\r':
+                result.append("\\r");
+                break;
+            default:
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param expected the token of the server
+     * @param actual the token sent by a client or {@code null}
+     * @return {@code true} if the given tokens are equal; the time taken does not depend on how many leading characters
+     *         match
+     */
+    static boolean isValidToken(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a new random token
+     */
+    static String newToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param server either {@code host:port} or just {@code port} standing for the loopback address
+     * @return the {@link InetSocketAddress} the given {@code server} stands for
+     */
+    static InetSocketAddress parseAddress(String server) {
+        final int colon = server.lastIndexOf(':');
+        try {
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(server.trim()));
+            }
+            return new InetSocketAddress(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BuildException(
+                    String.format("Cannot parse server address '%s'; expected host:port or port", server), e);
+        }
+    }
+
+    /**
+     * @param portFile the file written by {@link #writePortFile(Path, int, String)}
+     * @return a two element array containing the port and the token stored in the given {@code portFile}
+     * @throws IOException on I/O problems or if the {@code portFile} is malformed
+     */
+    static String[] readPortFile(Path portFile) throws IOException {
+        final List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+        if (lines.size() < 2) {
+            throw new IOException(String.format("'%s' does not contain a port and an access token", portFile));
+        }
+        return new String[] { lines.get(0).trim(), lines.get(1).trim() };
+    }
+
+    /**
+     * @param line the line to split
+     * @return a two element array containing the part of the given {@code line} before the first space and the
+     *         unescaped rest of the line; the second element is an empty {@link String} if there is no space
+     */
+    static String[] split(String line) {
+        final int space = line.indexOf(' ');
+        return space < 0 ? new String[] { line, "" }
+                : new String[] { line.substring(0, space), unescape(line.substring(space + 1)) };
+    }
+
+    /**
+     * @param value the {@link String} to unescape
+     * @return the given {@code value} with the escapes introduced by {@link #escape(String)} reverted
+     */
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        final StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                result.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Stores the given {@code port} and {@code token} in the given {@code portFile}, one per line. The content is
+     * written to a temporary file that is moved to the {@code portFile} afterwards, so that the clients never see a
+     * partially written {@code portFile}. On file systems supporting POSIX permissions, the temporary file is created
+     * readable and writable by its owner only before the token is written to it.
+     *
+     * @param portFile the file to write
+     * @param port the port the server listens on
+     * @param token the token the clients have to send
+     * @throws IOException on I/O problems
+     */
+    static void writePortFile(Path portFile, int port, String token) throws IOException {
+        final Path parent = portFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final String prefix = portFile.getFileName().toString();
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile(parent, prefix, ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            /* not a POSIX file system; the file inherits the access control list of its directory */
+            tempFile = Files.createTempFile(parent, prefix, ".tmp");
+        }
+        try {
+            Files.write(tempFile, (port + "\n" + token + "\n").getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tempFile, portFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, portFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Writes a line consisting of the given {@code keyword} and the escaped {@code value}.
+     *
+     * @param out the {@link Writer} to write to
+     * @param keyword the first word of the line
+     * @param value the rest of the line or {@code null} if the line consists of the {@code keyword} only
+     * @throws IOException on I/O problems
+     */
+    static void writeLine(Writer out, String keyword, String value) throws IOException {
+        out.write(keyword);
+        if (value != null) {
+            out.write(' ');
+            out.write(escape(value));
+        }
+        out.write('\n');
+    }
+
+    private ServerProtocol() {
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.ec4j.maven.lint.api.Logger;
+import org.ec4j.maven.lint.api.Violation;
+
+/**
+ * The violations found by a {@link CheckEditorconfigTask} in a single shard of the files, see {@link Sharding}. The
+ * reports of all shards are combined by {@link MergeEditorconfigReportsTask}. A report file looks as follows:
+ *
+ * <pre>
+ * editorconfig-shard-report/1
+ * shard 0 3
+ * violation README.adoc@2,1: Delete 2 characters - violates trim_trailing_whitespace = true, reported by ...
+ * stopped
+ * checked 42
+ * </pre>
+ *
+ * The values are escaped in the same way as in {@link ServerProtocol}. The {@code checked} line comes last because
+ * the report is written by a {@link Reporter} while the files are being checked. The {@code stopped} line is present
+ * only if the check stopped before all files of the shard were checked, e.g. because {@code maxViolations} was
+ * reached.
+ * <p>
+ * {@link #read(Path)} keeps only the counts in memory; the violations are streamed from the file by
+ * {@link #logViolations(Logger, boolean)}, so that the memory needed does not depend on the number of violations.
+ */
+class ShardReport {
+
+    /**
+     * Writes a {@link ShardReport} while the files are being checked.
+     */
+    static class Reporter extends ViolationReporter {
+        private final int shardCount;
+        private final int shardIndex;
+
+        Reporter(Path reportFile, int shardIndex, int shardCount) throws IOException {
+            super(reportFile);
+            this.shardIndex = shardIndex;
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        void startFiles() throws IOException {
+            ServerProtocol.writeLine(out, HEADER, null);
+            ServerProtocol.writeLine(out, SHARD, shardIndex + " " + shardCount);
+        }
+
+        @Override
+        void violation(Violation violation, boolean error) throws IOException {
+            ServerProtocol.writeLine(out, VIOLATION, violation.toString());
+        }
+
+        @Override
+        void writeFooter(int checkedCount, int violationCount, boolean complete) throws IOException {
+            if (!complete) {
+                ServerProtocol.writeLine(out, STOPPED, null);
+            }
+            ServerProtocol.writeLine(out, CHECKED, String.valueOf(checkedCount));
+        }
+    }
+
+    static final String CHECKED = "checked";
+    static final String HEADER = "editorconfig-shard-report/1";
+    static final String SHARD = "shard";
+    static final String STOPPED = "stopped";
+    static final String VIOLATION = "violation";
+
+    /**
+     * @param reportFile the file to read
+     * @param visitor called with the message of every {@code violation} line or {@code null}
+     * @return the {@link ShardReport} read from the given {@code reportFile}
+     * @throws IOException on I/O problems or if the {@code reportFile} is malformed
+     */
+    private static ShardReport parse(Path reportFile, ViolationVisitor visitor) throws IOException {
+        try (BufferedReader r = Files.newBufferedReader(reportFile, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(r.readLine())) {
+                throw new IOException(String.format("'%s' is not an editorconfig shard report", reportFile));
+            }
+            ShardReport result = null;
+            String line;
+            while ((line = r.readLine()) != null) {
+                final String[] parts = ServerProtocol.split(line);
+                if (SHARD.equals(parts[0])) {
+                    final String[] shard = parts[1].split(" ");
+                    result = new ShardReport(reportFile, Integer.parseInt(shard[0]), Integer.parseInt(shard[1]));
+                } else if (result == null) {
+                    break;
+                } else if (CHECKED.equals(parts[0])) {
+                    result.checkedCount = Integer.parseInt(parts[1]);
+                } else if (STOPPED.equals(parts[0])) {
+                    result.complete = false;
+                } else if (VIOLATION.equals(parts[0])) {
+                    result.violationCount++;
+                    if (visitor != null) {
+                        visitor.visit(parts[1]);
+                    }
+                }
+            }
+            if (result == null) {
+                throw new IOException(String.format("No shard line found in '%s'", reportFile));
+            }
+            return result;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException(String.format("Malformed editorconfig shard report '%s'", reportFile), e);
+        }
+    }
+
+    /**
+     * @param reportFile the file to read
+     * @return a new {@link ShardReport} read from the given {@code reportFile}
+     * @throws IOException on I/O problems or if the {@code reportFile} is malformed
+     */
+    static ShardReport read(Path reportFile) throws IOException {
+        return parse(reportFile, null);
+    }
+
+    /**
+     * Called for every violation of a {@link ShardReport}.
+     */
+    private interface ViolationVisitor {
+        void visit(String violation);
+    }
+
+    private int checkedCount;
+    private boolean complete = true;
+    private final Path reportFile;
+    private final int shardCount;
+    private final int shardIndex;
+    private int violationCount;
+
+    ShardReport(Path reportFile, int shardIndex, int shardCount) {
+        super();
+        this.reportFile = reportFile;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * @return the number of files checked in this shard
+     */
+    public int getCheckedCount() {
+        return checkedCount;
+    }
+
+    /**
+     * @return the file this {@link ShardReport} was read from
+     */
+    public Path getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return the zero based index of the shard
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * @return the number of violations found in this shard
+     */
+    public int getViolationCount() {
+        return violationCount;
+    }
+
+    /**
+     * @return {@code false} if the check of this shard stopped before all its files were checked
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Reads the {@link #reportFile} once again and logs its violations in the order they were reported.
+     *
+     * @param log the {@link Logger} to log to
+     * @param error if {@code true}, the violations are logged as errors, otherwise as warnings
+     * @throws IOException on I/O problems or if the {@link #reportFile} has changed since it was read
+     */
+    public void logViolations(final Logger log, final boolean error) throws IOException {
+        final ShardReport reread = parse(reportFile, new ViolationVisitor() {
+            @Override
+            public void visit(String violation) {
+                if (error) {
+                    log.error("{}", violation);
+                } else {
+                    log.warn("{}", violation);
+                }
+            }
+        });
+        if (reread.violationCount != violationCount || reread.shardIndex != shardIndex) {
+            throw new IOException(String.format("'%s' has changed while it was being merged", reportFile));
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Partitions the files to check into {@code shardCount} disjoint shards so that several machines can check a source
+ * tree together. The partitioning depends on the relative paths (and optionally the sizes) of the files only, so every
+ * machine comes to the same result no matter where the source tree is checked out and in which order the file system
+ * lists the files.
+ */
+class Sharding {
+
+    /**
+     * A file with its size, used for {@link #bySize(Iterator, Path, int, int)}.
+     */
+    private static class SizedFile {
+        private final Path file;
+        private final String key;
+        private final long size;
+
+        SizedFile(Path file, long size) {
+            super();
+            this.file = file;
+            this.key = key(file);
+            this.size = size;
+        }
+    }
+
+    /** Bigger files first; the ties are broken by path so that the order does not depend on the file system */
+    private static final Comparator<SizedFile> BIGGEST_FIRST = new Comparator<SizedFile>() {
+        @Override
+        public int compare(SizedFile o1, SizedFile o2) {
+            final int result = Long.compare(o2.size, o1.size);
+            return result != 0 ? result : o1.key.compareTo(o2.key);
+        }
+    };
+
+    /**
+     * Selects the files of the given shard by the hash of their relative paths. The given {@code files} are iterated
+     * over lazily.
+     *
+     * @param files the files to partition, relative to the basedir
+     * @param shardIndex the zero based index of the shard to select
+     * @param shardCount the number of shards
+     * @return an {@link Iterator} over those of the given {@code files} that belong to the given shard, in the
+     *         original order
+     */
+    static Iterator<Path> byHash(final Iterator<Path> files, final int shardIndex, final int shardCount) {
+        return new Iterator<Path>() {
+            private Path next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && files.hasNext()) {
+                    final Path file = files.next();
+                    if (shardOf(file, shardCount) == shardIndex) {
+                        next = file;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Path result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Selects the files of the given shard so that all shards have about the same number of bytes to check: the files
+     * are assigned to the shards one after another, the biggest first, each of them to the shard having the fewest
+     * bytes so far. Unlike {@link #byHash(Iterator, int, int)}, this needs to scan all files upfront.
+     *
+     * @param files the files to partition, relative to {@code basedir}
+     * @param basedir the directory to resolve the {@code files} against
+     * @param shardIndex the zero based index of the shard to select
+     * @param shardCount the number of shards
+     * @return an {@link Iterator} over those of the given {@code files} that belong to the given shard, in the
+     *         original order
+     * @throws IOException if the size of a file cannot be read
+     */
+    static Iterator<Path> bySize(Iterator<Path> files, Path basedir, int shardIndex, int shardCount)
+            throws IOException {
+        final List<SizedFile> sizedFiles = new ArrayList<>();
+        while (files.hasNext()) {
+            final Path file = files.next();
+            sizedFiles.add(new SizedFile(file, Files.size(basedir.resolve(file))));
+        }
+        final List<SizedFile> sorted = new ArrayList<>(sizedFiles);
+        Collections.sort(sorted, BIGGEST_FIRST);
+        final long[] shardSizes = new long[shardCount];
+        final Set<SizedFile> selected = new HashSet<>();
+        for (SizedFile sizedFile : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (shardSizes[i] < shardSizes[lightest]) {
+                    lightest = i;
+                }
+            }
+            shardSizes[lightest] += sizedFile.size;
+            if (lightest == shardIndex) {
+                selected.add(sizedFile);
+            }
+        }
+        final List<Path> result = new ArrayList<>(selected.size());
+        for (SizedFile sizedFile : sizedFiles) {
+            if (selected.contains(sizedFile)) {
+                result.add(sizedFile.file);
+            }
+        }
+        return result.iterator();
+    }
+
+    /**
+     * @param file a path relative to the basedir
+     * @return the given {@code file} with {@code /} as a separator
+     */
+    static String key(Path file) {
+        return file.toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * @param file a path relative to the basedir
+     * @param shardCount the number of shards
+     * @return the zero based index of the shard the given {@code file} belongs to when partitioning by hash
+     */
+    static int shardOf(Path file, int shardCount) {
+        final CRC32 crc = new CRC32();
+        crc.update(key(file).getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    private Sharding() {
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Resource;
+
+/**
+ * A read-only {@link Resource} whose content is read via {@link FileContents} once and then served from memory to all
+ * {@link Linter}s. Unlike {@link Resource}, it does not read and decode the file again in every
+ * {@link #openReader()} call. This class is not thread safe.
+ */
+class TextResource extends Resource {
+
+    private String text;
+
+    TextResource(Path absPath, Path relPath, Charset encoding) {
+        super(absPath, relPath, encoding);
+    }
+
+    /** @return the encoding of the file */
+    Charset getEncoding() {
+        return encoding;
+    }
+
+    /** @return the path of the file relative to the basedir */
+    Path getRelPath() {
+        return relPath;
+    }
+
+    /**
+     * @return the content of the file, read once and then kept in memory until {@link #unload()} is called
+     * @throws IOException on I/O problems
+     */
+    String getText() throws IOException {
+        if (text == null) {
+            text = FileContents.read(absPath, encoding);
+        }
+        return text;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Reader openReader() throws IOException {
+        return new StringReader(getText());
+    }
+
+    /**
+     * Frees the content held in memory. It will be read again on the next {@link #openReader()} call.
+     */
+    void unload() {
+        text = null;
+    }
+
+}
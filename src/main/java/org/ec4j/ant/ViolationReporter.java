@@ -0,0 +1,430 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Location;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+
+/**
+ * Streams {@link Violation}s to a file as soon as they are reported, so that the memory needed does not depend on the
+ * number of {@link Violation}s. The file is written under a temporary name and moved to its final location by
+ * {@link #endFiles(int, int, boolean)}; if the check does not get that far, {@link #close()} deletes the temporary file.
+ * <p>
+ * The format is selected by {@link #open(Path, Format, Path)}.
+ */
+abstract class ViolationReporter implements Closeable {
+
+    /**
+     * The formats of the report file.
+     */
+    enum Format {
+        /** JSON Lines, i.e. one JSON object per violation and line */
+        JSONL,
+        /** SARIF 2.1.0 */
+        SARIF,
+        /** The checkstyle XML format */
+        XML;
+
+        /**
+         * @param reportFile the file whose name should be inspected
+         * @return the {@link Format} implied by the extension of the given {@code reportFile}: {@link #XML} for
+         *         {@code *.xml}, {@link #SARIF} for {@code *.sarif} and {@code *.sarif.json} and {@link #JSONL} for
+         *         {@code *.jsonl}; {@code null} for any other extension
+         */
+        static Format forFile(Path reportFile) {
+            final String name = reportFile.getFileName().toString();
+            if (name.endsWith(".xml")) {
+                return XML;
+            } else if (name.endsWith(".sarif") || name.endsWith(".sarif.json")) {
+                return SARIF;
+            } else if (name.endsWith(".jsonl")) {
+                return JSONL;
+            }
+            return null;
+        }
+
+        /**
+         * @param name the name of the {@link Format}, case insensitive
+         * @return the {@link Format} having the given {@code name} or {@code null} if there is no such {@link Format}
+         */
+        static Format forName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the name of this {@link Format} as used in build files
+         */
+        String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * The checkstyle XML format understood by most CI servers and code review tools.
+     */
+    private static class CheckstyleReporter extends ViolationReporter {
+        private boolean fileOpen;
+
+        CheckstyleReporter(Path reportFile) throws IOException {
+            super(reportFile);
+        }
+
+        @Override
+        void endFile() throws IOException {
+            if (fileOpen) {
+                out.write("  </file>\n");
+                fileOpen = false;
+            }
+        }
+
+        @Override
+        void startFiles() throws IOException {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"4.3\">\n");
+        }
+
+        @Override
+        void startFile(Resource resource) throws IOException {
+            /* the file element is written lazily so that the compliant files do not bloat the report */
+            fileOpen = false;
+        }
+
+        @Override
+        void violation(Violation violation, boolean error) throws IOException {
+            if (!fileOpen) {
+                out.write("  <file name=\"" + escapeXml(violation.getResource().getPath().toString()) + "\">\n");
+                fileOpen = true;
+            }
+            final Location location = violation.getLocation();
+            out.write("    <error line=\"" + location.getLine() + "\" column=\"" + location.getColumn()
+                    + "\" severity=\"" + (error ? "error" : "warning") + "\" message=\""
+                    + escapeXml(message(violation)) + "\" source=\"" + escapeXml(source(violation)) + "\"/>\n");
+        }
+
+        @Override
+        void writeFooter(int checkedCount, int violationCount, boolean complete) throws IOException {
+            endFile();
+            out.write("</checkstyle>\n");
+        }
+    }
+
+    /**
+     * One JSON object per line and {@link Violation}, handy for {@code grep}, {@code jq} and custom scripts.
+     */
+    private static class JsonLinesReporter extends ViolationReporter {
+
+        JsonLinesReporter(Path reportFile) throws IOException {
+            super(reportFile);
+        }
+
+        @Override
+        void startFiles() {
+            /* no header */
+        }
+
+        @Override
+        void violation(Violation violation, boolean error) throws IOException {
+            final Location location = violation.getLocation();
+            out.write("{\"file\": " + LintMetrics.escapeJson(relativePath(violation)) + ", \"line\": "
+                    + location.getLine() + ", \"column\": " + location.getColumn() + ", \"severity\": \""
+                    + (error ? "error" : "warning") + "\", \"message\": " + LintMetrics.escapeJson(message(violation))
+                    + ", \"source\": " + LintMetrics.escapeJson(source(violation)) + "}\n");
+        }
+
+        @Override
+        void writeFooter(int checkedCount, int violationCount, boolean complete) {
+            /* no footer */
+        }
+    }
+
+    /**
+     * The Static Analysis Results Interchange Format 2.1.0 understood by GitHub code scanning and others.
+     */
+    private static class SarifReporter extends ViolationReporter {
+        private final Path basedir;
+        private String separator = "\n";
+
+        SarifReporter(Path reportFile, Path basedir) throws IOException {
+            super(reportFile);
+            this.basedir = basedir;
+        }
+
+        @Override
+        void startFiles() throws IOException {
+            out.write("{\n" //
+                    + "  \"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n" //
+                    + "  \"version\": \"2.1.0\",\n" //
+                    + "  \"runs\": [ {\n" //
+                    + "    \"tool\": { \"driver\": { \"name\": \"editorconfig-ant-tasks\", "
+                    + "\"informationUri\": \"https://github.com/ec4j/editorconfig-ant-tasks\" } },\n" //
+                    + "    \"originalUriBaseIds\": { \"SRCROOT\": { \"uri\": "
+                    + LintMetrics.escapeJson(basedir.toUri().toString()) + " } },\n" //
+                    + "    \"results\": [");
+        }
+
+        @Override
+        void violation(Violation violation, boolean error) throws IOException {
+            final Location location = violation.getLocation();
+            final String uri = basedir.toUri().relativize(violation.getResource().getPath().toUri()).toString();
+            out.write(separator + "      { \"ruleId\": " + LintMetrics.escapeJson(source(violation))
+                    + ", \"level\": \"" + (error ? "error" : "warning") + "\", \"message\": { \"text\": "
+                    + LintMetrics.escapeJson(message(violation))
+                    + " }, \"locations\": [ { \"physicalLocation\": { \"artifactLocation\": { \"uri\": "
+                    + LintMetrics.escapeJson(uri) + ", \"uriBaseId\": \"SRCROOT\" }, \"region\": { \"startLine\": "
+                    + location.getLine() + ", \"startColumn\": " + location.getColumn() + " } } } ] }");
+            separator = ",\n";
+        }
+
+        @Override
+        void writeFooter(int checkedCount, int violationCount, boolean complete) throws IOException {
+            out.write("\n    ]\n  } ]\n}\n");
+        }
+    }
+
+    /** Replaces the characters that cannot be represented in XML 1.0 */
+    private static final char REPLACEMENT_CHARACTER = '\ufffd';
+
+    /**
+     * Escapes the given {@code value} for use in an XML 1.0 attribute. The characters that XML 1.0 does not allow
+     * at all, such as most of the control characters, are replaced with {@code U+FFFD}, because not even a character
+     * reference is allowed for them.
+     *
+     * @param value the string to escape
+     * @return the escaped string
+     */
+    private static String escapeXml(String value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                result.append("&amp;");
+                break;
+            case '<':
+                result.append("&lt;");
+                break;
+            case '>':
+                result.append("&gt;");
+                break;
+            case '"':
+                result.append("&quot;");
+                break;
+            case '\t':
+            case '\n':
+            case '\r':
+                /* attribute value normalization would turn these into spaces */
+                result.append("&#").append((int) c).append(';');
+                break;
+            default:
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    result.append(c).append(value.charAt(++i));
+                } else if (c < 0x20 || c == 0xfffe || c == 0xffff || Character.isSurrogate(c)) {
+                    result.append(REPLACEMENT_CHARACTER);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param violation the {@link Violation} to describe
+     * @return the description of the given {@code violation} including the violated properties, but without the
+     *         location and the {@link org.ec4j.maven.lint.api.Linter}
+     */
+    static String message(Violation violation) {
+        final StringBuilder result = new StringBuilder(violation.getFix().getMessage());
+        final List<String> properties = Violations.violatedProperties(violation);
+        if (properties != null && !properties.isEmpty()) {
+            result.append(" - violates ");
+            for (int i = 0; i < properties.size(); i += 2) {
+                if (i > 0) {
+                    result.append(", ");
+                }
+                result.append(properties.get(i));
+                if (i + 1 < properties.size()) {
+                    result.append(" = ").append(properties.get(i + 1));
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Creates a new {@link ViolationReporter} writing to the given {@code reportFile} in the given {@code format}.
+     *
+     * @param reportFile the file to write
+     * @param format the {@link Format} to write
+     * @param basedir the directory to which the paths in the report are relative
+     * @return a new {@link ViolationReporter}
+     * @throws IOException on I/O problems
+     */
+    static ViolationReporter open(Path reportFile, Format format, Path basedir) throws IOException {
+        switch (format) {
+        case XML:
+            return new CheckstyleReporter(reportFile);
+        case SARIF:
+            return new SarifReporter(reportFile, basedir);
+        case JSONL:
+            return new JsonLinesReporter(reportFile);
+        default:
+            throw new IllegalStateException("Unexpected " + Format.class.getName() + " " + format);
+        }
+    }
+
+    /**
+     * @param violation the {@link Violation} whose file should be returned
+     * @return the path of the file relative to the basedir with {@code /} as a separator
+     */
+    static String relativePath(Violation violation) {
+        return violation.getResource().toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @param violation the {@link Violation} whose origin should be returned
+     * @return the class name of the {@link org.ec4j.maven.lint.api.Linter} that reported the given {@code violation}
+     */
+    static String source(Violation violation) {
+        final Linter linter = Violations.linter(violation);
+        return linter == null ? "" : linter.getClass().getName();
+    }
+
+    private boolean finished;
+    protected final Writer out;
+    private final Path reportFile;
+    private final Path tempFile;
+
+    /**
+     * @param reportFile the file to write; its parent directories are created if needed
+     * @throws IOException on I/O problems
+     */
+    ViolationReporter(Path reportFile) throws IOException {
+        super();
+        this.reportFile = reportFile;
+        final Path dir = reportFile.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        this.tempFile = Files.createTempFile(dir, reportFile.getFileName().toString(), ".tmp");
+        this.out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the temporary file unless {@link #endFiles(int, int, boolean)} has moved it to its final location already.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            finished = true;
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the footer and moves the report to its final location.
+     *
+     * @param checkedCount the number of files checked
+     * @param violationCount the number of violations found
+     * @param complete {@code false} if the check stopped before all files were checked, e.g. because
+     *        {@code maxViolations} was reached
+     * @throws IOException on I/O problems
+     */
+    void endFiles(int checkedCount, int violationCount, boolean complete) throws IOException {
+        writeFooter(checkedCount, violationCount, complete);
+        out.close();
+        try {
+            Files.move(tempFile, reportFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, reportFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finished = true;
+    }
+
+    /**
+     * Called after all violations of the current file were passed to {@link #violation(Violation, boolean)}.
+     *
+     * @throws IOException on I/O problems
+     */
+    void endFile() throws IOException {
+        /* nothing to do by default */
+    }
+
+    /**
+     * @return the file this {@link ViolationReporter} writes to
+     */
+    Path getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * Called before any other method except for {@link #close()}.
+     *
+     * @throws IOException on I/O problems
+     */
+    abstract void startFiles() throws IOException;
+
+    /**
+     * Called before the violations of the given {@code resource} are passed to
+     * {@link #violation(Violation, boolean)}.
+     *
+     * @param resource the file being checked
+     * @throws IOException on I/O problems
+     */
+    void startFile(Resource resource) throws IOException {
+        /* nothing to do by default */
+    }
+
+    /**
+     * @param violation the {@link Violation} to write
+     * @param error {@code true} if the {@code violation} fails the build, {@code false} if it is a warning only
+     * @throws IOException on I/O problems
+     */
+    abstract void violation(Violation violation, boolean error) throws IOException;
+
+    /**
+     * @param checkedCount the number of files checked
+     * @param violationCount the number of violations found
+     * @param complete {@code false} if the check stopped before all files were checked
+     * @throws IOException on I/O problems
+     */
+    abstract void writeFooter(int checkedCount, int violationCount, boolean complete) throws IOException;
+
+}
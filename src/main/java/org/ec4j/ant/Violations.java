@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+
+import org.ec4j.maven.lint.api.Edit;
+import org.ec4j.maven.lint.api.Linter;
+import org.ec4j.maven.lint.api.Location;
+import org.ec4j.maven.lint.api.Resource;
+import org.ec4j.maven.lint.api.Violation;
+
+/**
+ * Gives access to the parts of a {@link Violation} that the lint API does not expose: the {@link Linter} that
+ * reported it and the violated properties. The fields are read via reflection; if that is not possible, e.g. because a
+ * newer lint API renamed them, the accessors return {@code null} and the callers fall back to what the public API
+ * offers.
+ */
+class Violations {
+
+    /** The {@code linter} field of {@link Violation} or {@code null} if it is not accessible */
+    private static final Field LINTER_FIELD;
+
+    /** The {@code violatedProperties} field of {@link Violation} or {@code null} if it is not accessible */
+    private static final Field VIOLATED_PROPERTIES_FIELD;
+
+    /** The constructor of {@link Violation} accepting any number of properties or {@code null} if not accessible */
+    private static final Constructor<Violation> VIOLATION_CONSTRUCTOR;
+
+    static {
+        LINTER_FIELD = field("linter");
+        VIOLATED_PROPERTIES_FIELD = field("violatedProperties");
+        Constructor<Violation> constructor;
+        try {
+            constructor = Violation.class.getDeclaredConstructor(Resource.class, Location.class, Edit.class,
+                    Linter.class, String[].class);
+            constructor.setAccessible(true);
+        } catch (Exception e) {
+            constructor = null;
+        }
+        VIOLATION_CONSTRUCTOR = VIOLATED_PROPERTIES_FIELD == null || LINTER_FIELD == null ? null : constructor;
+    }
+
+    /**
+     * @return {@code true} if {@link #relocate(Violation, Resource, Location)} can be used
+     */
+    static boolean canRelocate() {
+        return VIOLATION_CONSTRUCTOR != null;
+    }
+
+    private static Field field(String name) {
+        try {
+            final Field result = Violation.class.getDeclaredField(name);
+            result.setAccessible(true);
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param violation the {@link Violation} to inspect
+     * @return the {@link Linter} that reported the given {@code violation} or {@code null} if not available
+     */
+    static Linter linter(Violation violation) {
+        if (LINTER_FIELD == null) {
+            return null;
+        }
+        try {
+            return (Linter) LINTER_FIELD.get(violation);
+        } catch (IllegalAccessException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a copy of the given {@code violation} reported for another {@link Resource} and {@link Location}.
+     * Must not be called unless {@link #canRelocate()} returns {@code true}.
+     *
+     * @param violation the {@link Violation} to copy
+     * @param resource the {@link Resource} of the new {@link Violation}
+     * @param location the {@link Location} of the new {@link Violation}
+     * @return a new {@link Violation}
+     * @throws ReflectiveOperationException if the {@link Violation} cannot be created
+     */
+    static Violation relocate(Violation violation, Resource resource, Location location)
+            throws ReflectiveOperationException {
+        return VIOLATION_CONSTRUCTOR.newInstance(resource, location, violation.getFix(),
+                LINTER_FIELD.get(violation), violatedProperties(violation).toArray(new String[0]));
+    }
+
+    /**
+     * @param violation the {@link Violation} to inspect
+     * @return the violated properties as a flat list of alternating keys and values, or {@code null} if not
+     *         available
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> violatedProperties(Violation violation) {
+        if (VIOLATED_PROPERTIES_FIELD == null) {
+            return null;
+        }
+        try {
+            final List<String> result = (List<String>) VIOLATED_PROPERTIES_FIELD.get(violation);
+            return result == null ? null : Collections.unmodifiableList(result);
+        } catch (IllegalAccessException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    private Violations() {
+    }
+
+}
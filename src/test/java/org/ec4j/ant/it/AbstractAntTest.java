@@ -118,7 +118,7 @@ public class AbstractAntTest {
         deleteDirectory(target);
         Files.createDirectories(target);
         Files.walkFileTree(src, new CopyFileVisitor(target));
-        antSupport.configureProject(target.resolve("build.xml").toString(), Project.MSG_VERBOSE);
+        antSupport.configureProject(target.resolve("build.xml").toString(), Project.MSG_DEBUG);
         antSupport.getProject().setBaseDir(target.toFile());
     }
 
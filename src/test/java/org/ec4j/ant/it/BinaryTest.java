@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("binary");
+    }
+
+    @Test
+    public void skipBinary() throws Exception {
+
+        executeTarget("editorconfig.checkSkipBinary");
+
+        assertLogText("Skipping binary file 'garbage.dat'") //
+                .assertLogText("Skipping binary file 'image.dat'") //
+                .assertLogText("Processing file 'utf-16le.txt'") //
+                .assertLogText("Skipped 2 binary files having 539 bytes in total") //
+                .assertLogText("Checked 4 files") //
+        ;
+    }
+
+}
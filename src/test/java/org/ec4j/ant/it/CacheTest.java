@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import org.apache.tools.ant.BuildException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("defaults-formatted");
+    }
+
+    @Test
+    public void cache() throws Exception {
+
+        executeTarget("editorconfig.checkCache");
+
+        assertLogText("Processing file 'README.adoc'") //
+                .assertLogText("Skipped 0 unchanged files found in cache file") //
+                .assertLogText("Checked 6 files") //
+        ;
+
+        executeTarget("editorconfig.checkCache");
+
+        assertLogText("Skipping unchanged file 'README.adoc'") //
+                .assertLogText("Skipped 6 unchanged files found in cache file") //
+                .assertLogText("Checked 0 files") //
+        ;
+
+        final Path readme = antSupport.getProject().getBaseDir().toPath().resolve("README.adoc");
+        Files.write(readme, "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try {
+            executeTarget("editorconfig.checkCache");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+        assertLogText("Processing file 'README.adoc'") //
+                .assertLogText("Skipped 5 unchanged files found in cache file") //
+                .assertLogText("Checked 1 file") //
+        ;
+
+    }
+
+    @Test
+    public void partialRunKeepsOtherEntries() throws Exception {
+
+        executeTarget("editorconfig.checkCache");
+        assertLogText("Checked 6 files");
+
+        executeTarget("editorconfig.checkCacheReadme");
+        assertLogText("Skipped 1 unchanged file found in cache file");
+
+        executeTarget("editorconfig.checkCache");
+        assertLogText("Skipped 6 unchanged files found in cache file") //
+                .assertLogText("Checked 0 files") //
+        ;
+
+    }
+
+    @Test
+    public void sharedProperties() throws Exception {
+
+        executeTarget("editorconfig.checkSharedProperties");
+        assertLogText("Registered a new ResourcePropertiesService under reference 'editorconfig.properties'") //
+                .assertLogText("Checked 6 files") //
+        ;
+
+        executeTarget("editorconfig.checkSharedProperties");
+        assertLogText(
+                "Reusing the ResourcePropertiesService registered under reference 'editorconfig.properties'; evicted 0 modified .editorconfig files") //
+                        .assertLogText("Checked 6 files") //
+        ;
+
+        final Path editorconfig = antSupport.getProject().getBaseDir().toPath().resolve(".editorconfig");
+        Files.setLastModifiedTime(editorconfig,
+                FileTime.fromMillis(Files.getLastModifiedTime(editorconfig).toMillis() + 10000));
+        executeTarget("editorconfig.checkSharedProperties");
+        assertLogText(
+                "Reusing the ResourcePropertiesService registered under reference 'editorconfig.properties'; evicted 1 modified .editorconfig files") //
+                        .assertLogText("Checked 6 files") //
+        ;
+
+    }
+
+}
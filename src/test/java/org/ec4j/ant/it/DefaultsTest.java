@@ -18,10 +18,21 @@ package org.ec4j.ant.it;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -74,6 +85,40 @@ public class DefaultsTest extends AbstractAntTest {
         ;
     }
 
+    @Test
+    public void checkMaxViolations() throws IOException {
+        try {
+            executeTarget("editorconfig.checkMaxViolations");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Stopped checking after the first 1 of them"));
+        }
+
+        assertLogText(
+                "README.adoc@2,1: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter");
+        final String log = antSupport.getFullLog();
+        Assert.assertFalse(log, log.contains("src/main/resources/indent.xml@".replace('/', File.separatorChar)));
+        Assert.assertFalse(log, log.contains("Checked "));
+    }
+
+    @Test
+    public void checkResourceCollections() throws IOException {
+        try {
+            executeTarget("editorconfig.checkResourceCollections");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("There are .editorconfig violations"));
+        }
+
+        assertLogText(
+                "src/main/resources/trailing-whitespace.txt@1,7: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter"
+                        .replace('/', File.separatorChar)) //
+                .assertLogText(
+                        "src/main/resources/indent.xml@23,5: Delete 1 character - violates indent_style = space, indent_size = 2, reported by org.ec4j.maven.linters.XmlLinter"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText("Checked 2 files");
+    }
+
     @Test
     public void format() throws Exception {
 
@@ -119,4 +164,197 @@ public class DefaultsTest extends AbstractAntTest {
 
     }
 
+    @Test
+    public void checkChunked() throws IOException {
+        try {
+            executeTarget("editorconfig.checkChunked");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+
+        assertLogText("Processing file 'README.adoc' using linter org.ec4j.maven.linters.TextLinter in ") //
+                .assertLogText(
+                        "README.adoc@2,1: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter") //
+                .assertLogText(
+                        "src/main/resources/trailing-whitespace.txt@1,7: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText(
+                        "src/main/resources/indent.xml@23,5: Delete 1 character - violates indent_style = space, indent_size = 2, reported by org.ec4j.maven.linters.XmlLinter"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText(
+                        "src/main/resources/indent.xml@24,3: Delete 2 characters - violates indent_style = space, indent_size = 2, reported by org.ec4j.maven.linters.XmlLinter"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText("Checked 6 files") //
+        ;
+    }
+
+    @Test
+    public void checkMissingDir() throws IOException {
+        executeTarget("editorconfig.checkMissingDir");
+        assertLogText("Checked 1 file");
+    }
+
+    @Test
+    public void checkUnreadableDir() throws IOException {
+        final Path unreadable = antSupport.getProject().getBaseDir().toPath().resolve("src/unreadable");
+        Files.createDirectories(unreadable);
+        Files.write(unreadable.resolve("Unreadable.java"), "class Unreadable {}\n".getBytes(StandardCharsets.UTF_8));
+        Assume.assumeTrue(unreadable.toFile().setReadable(false, false));
+        try {
+            /* privileged users can read the directory anyway */
+            Assume.assumeFalse(Files.isReadable(unreadable));
+            executeTarget("editorconfig.checkUnreadableDir");
+            assertLogText("Skipping directory " + unreadable + " that cannot be listed") //
+                    .assertLogText("Checked 1 file");
+        } finally {
+            unreadable.toFile().setReadable(true, false);
+        }
+    }
+
+    @Test
+    public void checkParallel() throws IOException {
+        try {
+            executeTarget("editorconfig.checkParallel");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+
+        final String log = antSupport.getFullLog();
+        final String[] expectedInOrder = new String[] { "Processing file '.editorconfig'",
+                "Processing file 'README.adoc'", "Processing file 'build.xml'",
+                "Processing file 'src/main/java/org/ec4j/maven/it/defaults/App.java'".replace('/', File.separatorChar),
+                "Processing file 'src/main/resources/indent.xml'".replace('/', File.separatorChar),
+                "src/main/resources/indent.xml@23,5: Delete 1 character - violates indent_style = space, indent_size = 2, reported by org.ec4j.maven.linters.XmlLinter"
+                        .replace('/', File.separatorChar),
+                "src/main/resources/indent.xml@24,3: Delete 2 characters - violates indent_style = space, indent_size = 2, reported by org.ec4j.maven.linters.XmlLinter"
+                        .replace('/', File.separatorChar),
+                "Processing file 'src/main/resources/trailing-whitespace.txt'".replace('/', File.separatorChar),
+                "Checked 6 files" };
+        int lastIndex = -1;
+        for (String expected : expectedInOrder) {
+            final int index = log.indexOf(expected);
+            Assert.assertTrue("'" + expected + "' should occur after index " + lastIndex + " in\n" + log,
+                    index > lastIndex);
+            lastIndex = index;
+        }
+        assertLogText(
+                "src/main/resources/trailing-whitespace.txt@1,7: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter"
+                        .replace('/', File.separatorChar)) //
+                .assertLogText(
+                        "README.adoc@2,1: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter") //
+        ;
+    }
+
+    @Test
+    public void formatParallel() throws Exception {
+
+        executeTarget("editorconfig.formatParallel");
+
+        assertLogText("Formatted 3 out of 6 files");
+
+        final Path actualBaseDir = antSupport.getProject().getBaseDir().toPath();
+        assertFilesEqual(actualBaseDir, expectedDir, ".editorconfig");
+        assertFilesEqual(actualBaseDir, expectedDir, "build.xml");
+        assertFilesEqual(actualBaseDir, expectedDir, "README.adoc");
+        assertFilesEqual(actualBaseDir, expectedDir, "src/main/java/org/ec4j/maven/it/defaults/App.java");
+        assertFilesEqual(actualBaseDir, expectedDir, "src/main/resources/indent.xml");
+        assertFilesEqual(actualBaseDir, expectedDir, "src/main/resources/trailing-whitespace.txt");
+
+    }
+
+    @Test
+    public void formatBackup() throws Exception {
+
+        executeTarget("editorconfig.formatBackup");
+
+        assertLogText("Formatted 3 out of 6 files");
+
+        final Path actualBaseDir = antSupport.getProject().getBaseDir().toPath();
+        final Path originalBaseDir = Paths.get("src/test/projects/defaults").toAbsolutePath();
+        for (String relPath : new String[] { "README.adoc", "src/main/resources/indent.xml",
+                "src/main/resources/trailing-whitespace.txt" }) {
+            assertFilesEqual(actualBaseDir, expectedDir, relPath);
+            final Path backup = actualBaseDir.resolve(relPath + ".bak");
+            Assert.assertEquals(new String(Files.readAllBytes(originalBaseDir.resolve(relPath)), StandardCharsets.UTF_8),
+                    new String(Files.readAllBytes(backup), StandardCharsets.UTF_8));
+        }
+        Assert.assertFalse(Files.exists(actualBaseDir.resolve("build.xml.bak")));
+        assertFilesEqual(actualBaseDir, expectedDir, "build.xml");
+
+    }
+
+    @Test
+    public void formatKeepsPermissions() throws Exception {
+        final Path file = antSupport.getProject().getBaseDir().toPath().resolve("src/main/resources/indent.xml");
+        final PosixFileAttributeView posix = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        Assume.assumeNotNull(posix);
+        final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        posix.setPermissions(permissions);
+        final UserPrincipal owner = Files.getOwner(file);
+
+        executeTarget("editorconfig.formatDefaults");
+        assertLogText("Formatted 3 out of 6 files");
+
+        assertFilesEqual(antSupport.getProject().getBaseDir().toPath(), expectedDir, "src/main/resources/indent.xml");
+        Assert.assertEquals(permissions, Files.getPosixFilePermissions(file));
+        Assert.assertEquals(owner, Files.getOwner(file));
+    }
+
+    @Test
+    public void formatTwice() throws Exception {
+
+        executeTarget("editorconfig.formatDefaults");
+        assertLogText("Formatted 3 out of 6 files") //
+                .assertLogText("Skipped writing 3 files whose formatted content equals the original");
+
+        final Path actualBaseDir = antSupport.getProject().getBaseDir().toPath();
+        final Path file = actualBaseDir.resolve("src/main/resources/indent.xml");
+        /* every write replaces the file with a new one */
+        final Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+
+        Files.delete(actualBaseDir.resolve("editorconfig.formatDefaults.log"));
+        antSupport.configureProject(actualBaseDir.resolve("build.xml").toString(), Project.MSG_DEBUG);
+        antSupport.getProject().setBaseDir(actualBaseDir.toFile());
+        executeTarget("editorconfig.formatDefaults");
+        assertLogText("Formatted 0 out of 6 files") //
+                .assertLogText("Skipped writing 6 files whose formatted content equals the original");
+
+        Assert.assertEquals(fileKey, Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+        assertFilesEqual(actualBaseDir, expectedDir, "src/main/resources/indent.xml");
+
+    }
+
+    @Test
+    public void formatPatch() throws Exception {
+
+        executeTarget("editorconfig.formatPatch");
+
+        assertLogText("Formatted 3 out of 6 files") //
+                .assertLogText("Wrote the changes of 3 files to patch file");
+
+        final Path actualBaseDir = antSupport.getProject().getBaseDir().toPath();
+        final Path originalBaseDir = Paths.get("src/test/projects/defaults").toAbsolutePath();
+        for (String relPath : new String[] { "README.adoc", "src/main/resources/indent.xml",
+                "src/main/resources/trailing-whitespace.txt" }) {
+            assertFilesEqual(actualBaseDir, originalBaseDir, relPath);
+        }
+        final String patch = new String(Files.readAllBytes(actualBaseDir.resolveSibling("defaults.patch")),
+                StandardCharsets.UTF_8);
+        final String expected = "--- a/README.adoc\n" //
+                + "+++ b/README.adoc\n" //
+                + "@@ -1,3 +1,3 @@\n" //
+                + " = Defaults integration test\n" //
+                + "-  \n" //
+                + "+\n" //
+                + " The previous line contains trailing spaces\n";
+        Assert.assertTrue(patch, patch.contains(expected));
+        Assert.assertTrue(patch, patch.contains("--- a/src/main/resources/indent.xml\n"));
+        Assert.assertTrue(patch, patch.contains("--- a/src/main/resources/trailing-whitespace.txt\n"));
+
+    }
+
 }
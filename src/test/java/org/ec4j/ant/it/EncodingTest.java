@@ -42,7 +42,10 @@ public class EncodingTest extends AbstractAntTest {
                 .assertLogText(
                         "Creating a Resource for path 'src/main/resources/simplelogger.properties' with encoding 'ISO-8859-1'"
                                 .replace('/', File.separatorChar)) //
-                .assertLogText("Checked 3 files") //
+                .assertLogText(
+                        "Creating a Resource for path 'src/main/resources/bom.txt' with encoding 'UTF-8'"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText("Checked 4 files") //
         ;
 
     }
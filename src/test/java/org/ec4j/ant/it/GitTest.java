@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.tools.ant.BuildException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitTest extends AbstractAntTest {
+
+    private Path baseDir;
+
+    @Before
+    public void before() throws IOException, InterruptedException {
+        before("git");
+        baseDir = antSupport.getProject().getBaseDir().toPath();
+        git("init", "-q");
+        git("add", "-A");
+        git("-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false", "commit",
+                "-q", "-m", "Initial");
+    }
+
+    @Test
+    public void changedSince() throws Exception {
+        Files.write(baseDir.resolve("untracked.adoc"), "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            executeTarget("editorconfig.checkChangedSince");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+        assertLogText("Running [git, merge-base, HEAD, HEAD]") //
+                .assertLogText("untracked.adoc@1,20: Delete 2 characters") //
+                .assertLogText("Checked 1 file") //
+        ;
+        Assert.assertFalse(antSupport.getFullLog().contains("README.adoc@"));
+    }
+
+    @Test
+    public void changedSinceInSubdirectory() throws Exception {
+        Files.write(baseDir.resolve("module/untracked.adoc"),
+                "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            executeTarget("editorconfig.checkChangedSinceInModule");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+        assertLogText("untracked.adoc@1,20: Delete 2 characters") //
+                .assertLogText("Checked 1 file") //
+        ;
+        Assert.assertFalse(antSupport.getFullLog().contains("README.adoc@"));
+    }
+
+    @Test
+    public void onlyStaged() throws Exception {
+        Files.write(baseDir.resolve("staged.adoc"), "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8));
+
+        executeTarget("editorconfig.checkStaged");
+        assertLogText("Running [git, diff, --name-only, -z, --no-renames, --diff-filter=ACMT, --cached, --]") //
+                .assertLogText("Checked 0 files") //
+        ;
+
+        git("add", "staged.adoc");
+        try {
+            executeTarget("editorconfig.checkStaged");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+        assertLogText("Processing file 'staged.adoc'") //
+                .assertLogText("staged.adoc@1,20: Delete 2 characters") //
+        ;
+    }
+
+    private void git(String... args) throws IOException, InterruptedException {
+        final String[] cmd = new String[args.length + 1];
+        cmd[0] = "git";
+        System.arraycopy(args, 0, cmd, 1, args.length);
+        final Process process = new ProcessBuilder(cmd).directory(baseDir.toFile()).redirectErrorStream(true).start();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            final byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+        Assert.assertEquals(Arrays.toString(cmd) + " failed: " + new String(out.toByteArray(), StandardCharsets.UTF_8),
+                0, process.waitFor());
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import org.apache.tools.ant.DefaultLogger;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.ProjectComponent;
+import org.ec4j.ant.AntLintLogger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LogLevelTest {
+
+    private static DefaultLogger newLogger(int level) {
+        final DefaultLogger result = new DefaultLogger();
+        result.setMessageOutputLevel(level);
+        return result;
+    }
+
+    @Test
+    public void outputLevelUpdatedPerExecution() {
+        final Project project = new Project();
+        project.addBuildListener(newLogger(Project.MSG_INFO));
+        final ProjectComponent component = new ProjectComponent() {
+        };
+        component.setProject(project);
+        final AntLintLogger log = new AntLintLogger(component, AntLintLogger.Level.TRACE);
+        log.updateOutputLevel();
+
+        Assert.assertTrue(log.isInfoEnabled());
+        Assert.assertFalse(log.isDebugEnabled());
+
+        final DefaultLogger recorder = newLogger(Project.MSG_VERBOSE);
+        project.addBuildListener(recorder);
+        Assert.assertFalse("The output level should be determined by updateOutputLevel() only", log.isDebugEnabled());
+        log.updateOutputLevel();
+        Assert.assertTrue(log.isDebugEnabled());
+        Assert.assertFalse(log.isTraceEnabled());
+
+        recorder.setMessageOutputLevel(Project.MSG_DEBUG);
+        log.updateOutputLevel();
+        Assert.assertTrue(log.isTraceEnabled());
+
+        project.removeBuildListener(recorder);
+        log.updateOutputLevel();
+        Assert.assertFalse(log.isDebugEnabled());
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("defaults-formatted");
+    }
+
+    @Test
+    public void metricsCsv() throws Exception {
+
+        executeTarget("editorconfig.checkMetricsCsv");
+
+        assertLogText("Checked 6 files");
+        final Path baseDir = antSupport.getProject().getBaseDir().toPath();
+        final String metrics = new String(Files.readAllBytes(baseDir.resolve("build/metrics.csv")),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(metrics, metrics.startsWith("category,name,files,bytes,timeNanos\n"));
+        Assert.assertTrue(metrics, metrics.contains("\nphase,lint,6,"));
+        Assert.assertTrue(metrics, metrics.contains("\nlinter,org.ec4j.maven.linters.XmlLinter,2,"));
+        Assert.assertTrue(metrics, metrics.contains("\nextension,adoc,1,"));
+    }
+
+    @Test
+    public void metricsJson() throws Exception {
+
+        executeTarget("editorconfig.checkMetrics");
+
+        assertLogText("The 2 slowest files:") //
+                .assertLogText("Metrics written to '") //
+                .assertLogText("Checked 6 files") //
+        ;
+        final Path baseDir = antSupport.getProject().getBaseDir().toPath();
+        final String metrics = new String(Files.readAllBytes(baseDir.resolve("build/metrics.json")),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(metrics, metrics.contains("\"files\": 6,"));
+        Assert.assertTrue(metrics,
+                metrics.contains("{ \"name\": \"org.ec4j.maven.linters.TextLinter\", \"files\": 6, \"bytes\": "));
+        Assert.assertTrue(metrics, metrics.contains("{ \"name\": \"xml\", \"files\": 2, \"bytes\": "));
+        Assert.assertTrue(metrics, metrics.contains("\"slowestFiles\": [\n    { \"name\": "));
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.tools.ant.BuildException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModulesTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("modules");
+    }
+
+    @Test
+    public void checkModules() throws IOException {
+        executeTarget("editorconfig.checkModules");
+
+        assertLogText(
+                "core/a.txt@1,6: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter"
+                        .replace('/', File.separatorChar)) //
+                .assertLogText("Module 'core': processed 2 files having 1 violation") //
+                .assertLogText("Module 'webapp': processed 1 file having 0 violations") //
+                .assertLogText("Checked 3 files") //
+        ;
+    }
+
+    @Test
+    public void checkModulesNoProperties() throws IOException {
+        try {
+            executeTarget("editorconfig.checkModulesNoProperties");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("No .editorconfig properties applicable for files under"));
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("legacy"));
+        }
+        assertLogText("Module 'core': processed 2 files having 1 violation") //
+                .assertLogText("Module 'legacy': processed 0 files having 0 violations") //
+        ;
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.tools.ant.BuildException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("defaults");
+    }
+
+    @Test
+    public void checkReports() throws IOException {
+        try {
+            executeTarget("editorconfig.checkReports");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Stopped checking after the first 1 of them"));
+        }
+
+        assertLogText("3 more violations were not logged as set by maxLoggedViolations") //
+                .assertLogText("Violation report written to '") //
+        ;
+        final Path baseDir = antSupport.getProject().getBaseDir().toPath();
+
+        final String xml = new String(Files.readAllBytes(baseDir.resolve("build/violations.xml")),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(xml, xml.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"4.3\">\n"));
+        Assert.assertTrue(xml, xml.contains(
+                "<error line=\"2\" column=\"1\" severity=\"warning\" message=\"Delete 2 characters - violates trim_trailing_whitespace = true\" source=\"org.ec4j.maven.linters.TextLinter\"/>"));
+        Assert.assertTrue(xml, xml.contains("<error line=\"1\" column=\"7\" severity=\"warning\""));
+        Assert.assertTrue(xml, xml.endsWith("</checkstyle>\n"));
+
+        final String sarif = new String(Files.readAllBytes(baseDir.resolve("build/violations.json")),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(sarif, sarif.contains("\"version\": \"2.1.0\""));
+        Assert.assertTrue(sarif, sarif.contains(
+                "\"artifactLocation\": { \"uri\": \"src/main/resources/trailing-whitespace.txt\", \"uriBaseId\": \"SRCROOT\" }, \"region\": { \"startLine\": 1, \"startColumn\": 7 }"));
+
+        final String jsonLines = new String(Files.readAllBytes(baseDir.resolve("build/violations.jsonl")),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(
+                "{\"file\": \"README.adoc\", \"line\": 2, \"column\": 1, \"severity\": \"error\", \"message\": \"Delete 2 characters - violates trim_trailing_whitespace = true\", \"source\": \"org.ec4j.maven.linters.TextLinter\"}\n",
+                jsonLines);
+    }
+
+    @Test
+    public void checkReportUnknownExtension() throws IOException {
+        try {
+            executeTarget("editorconfig.checkReportUnknownExtension");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("set reportFormat to xml, sarif or jsonl"));
+        }
+        Assert.assertFalse(Files.exists(antSupport.getProject().getBaseDir().toPath().resolve("build/violations.json")));
+    }
+
+    @Test
+    public void checkReportUnknownFormat() throws IOException {
+        try {
+            executeTarget("editorconfig.checkReportUnknownFormat");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Unknown reportFormat 'csv'"));
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.ec4j.ant.ServerEditorconfigTask;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServerTest extends AbstractAntTest {
+
+    private Path baseDir;
+    private int port;
+    private Thread serverThread;
+
+    @After
+    public void after() throws Exception {
+        executeTarget("editorconfig.serverStop");
+        serverThread.join(10000);
+        Assert.assertFalse("The server should have stopped", serverThread.isAlive());
+    }
+
+    @Before
+    public void before() throws IOException, InterruptedException {
+        before("defaults-formatted");
+        baseDir = antSupport.getProject().getBaseDir().toPath();
+        final Path portFile = baseDir.resolve("build/server.port");
+
+        final Project serverProject = new Project();
+        serverProject.setBaseDir(baseDir.toFile());
+        final ServerEditorconfigTask server = new ServerEditorconfigTask();
+        server.setProject(serverProject);
+        server.setPortFile(portFile.toFile());
+        server.setIdleTimeout(60);
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.execute();
+            }
+        });
+        serverThread.start();
+        for (int i = 0; i < 100 && !Files.exists(portFile); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue("The server should have written " + portFile, Files.exists(portFile));
+        port = Integer.parseInt(Files.readAllLines(portFile, StandardCharsets.UTF_8).get(0));
+    }
+
+    @Test
+    public void checkFailureKeepsServing() throws Exception {
+        final Path bad = baseDir.resolve("bad");
+        Files.createDirectories(bad);
+        Files.write(bad.resolve(".editorconfig"), "[*]\ncharset = no-such-charset\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(bad.resolve("bad.adoc"), "Bad\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            executeTarget("editorconfig.checkViaServer");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("no-such-charset"));
+        }
+
+        Files.delete(bad.resolve(".editorconfig"));
+        Files.delete(bad.resolve("bad.adoc"));
+        executeTarget("editorconfig.checkViaServer");
+        assertLogText("Checked 6 files");
+    }
+
+    @Test
+    public void checkViaServer() throws Exception {
+        executeTarget("editorconfig.checkViaServer");
+        assertLogText("Registered a new ResourcePropertiesService") //
+                .assertLogText("Processing file 'README.adoc'") //
+                .assertLogText("Checked 6 files") //
+        ;
+
+        Files.write(baseDir.resolve("trailing.adoc"), "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8));
+        try {
+            executeTarget("editorconfig.checkViaServer");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+        assertLogText("Reusing the ResourcePropertiesService") //
+                .assertLogText("trailing.adoc@1,20: Delete 2 characters") //
+                .assertLogText("Checked 7 files") //
+        ;
+    }
+
+    @Test
+    public void rejectInvalidToken() throws Exception {
+        for (String token : new String[] { null, "token 0123456789abcdef0123456789abcdef" }) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                out.write("editorconfig-server/1\n");
+                if (token != null) {
+                    out.write(token + "\n");
+                }
+                out.write("stop\n");
+                out.flush();
+                final String response = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                Assert.assertEquals("fail Missing or invalid access token", response);
+            }
+        }
+        /* the server is still running */
+        executeTarget("editorconfig.checkViaServer");
+        assertLogText("Checked 6 files");
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.tools.ant.BuildException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardTest extends AbstractAntTest {
+
+    @Before
+    public void before() throws IOException {
+        before("defaults");
+    }
+
+    @Test
+    public void checkShards() throws IOException {
+        try {
+            executeTarget("editorconfig.checkShards");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue("Should throw BuildException containing 'There are .editorconfig violations'",
+                    e.getMessage().contains("There are .editorconfig violations"));
+        }
+
+        assertLogText("Checking shard 2 of 3 shards") //
+                .assertLogText(
+                        "README.adoc@2,1: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter") //
+                .assertLogText(
+                        "src/main/resources/trailing-whitespace.txt@1,7: Delete 2 characters - violates trim_trailing_whitespace = true, reported by org.ec4j.maven.linters.TextLinter"
+                                .replace('/', File.separatorChar)) //
+                .assertLogText("Checked 6 files in 3 shards") //
+        ;
+    }
+
+    @Test
+    public void checkShardsStopped() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            antSupport.getProject().setUserProperty("shard.index", String.valueOf(i));
+            try {
+                executeTarget("editorconfig.checkShardStopped");
+            } catch (BuildException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("as set by maxViolations"));
+            }
+        }
+        try {
+            executeTarget("editorconfig.mergeShards");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("are incomplete because their check stopped"));
+        }
+    }
+
+    @Test
+    public void checkShardsBySizeMissing() throws IOException {
+        try {
+            executeTarget("editorconfig.checkShardsBySize");
+            Assert.fail("Expected " + BuildException.class.getName());
+        } catch (BuildException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("Missing the reports of shards [1] out of 3"));
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2018 EditorConfig Maven Plugin
+ * project contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ec4j.ant.it;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatchTest extends AbstractAntTest {
+
+    private Path baseDir;
+
+    @Before
+    public void before() throws IOException {
+        before("defaults-formatted");
+        baseDir = antSupport.getProject().getBaseDir().toPath();
+    }
+
+    @Test
+    public void watch() throws Exception {
+        final Exception[] failure = new Exception[1];
+        final Thread editor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100 && !antSupport.getFullLog().contains("for changes"); i++) {
+                        Thread.sleep(100);
+                    }
+                    Files.write(baseDir.resolve("trailing.adoc"),
+                            "Trailing whitespace  \n".getBytes(StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        editor.start();
+
+        executeTarget("editorconfig.checkWatch");
+        editor.join();
+        Assert.assertNull(failure[0]);
+
+        assertLogText("Checked 6 files") //
+                .assertLogText("Watching 10 directories for changes") //
+                .assertLogText("Processing 1 changed file") //
+                .assertLogText("trailing.adoc@1,20: Delete 2 characters") //
+                .assertLogText("Checked 1 file") //
+                .assertLogText("Stopped watching after 3 s without any change") //
+        ;
+    }
+
+}